@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes the files of a commit as a tar or zip archive, copying each
+ * blob's contents from the object store to the output in pieces, so
+ * that neither the working tree nor more than a buffer's worth of any
+ * file is involved. Tar archives are POSIX ustar, with a pax header for
+ * names too long for ustar; every entry is a regular file with the time
+ * of the commit.
+ * @author Jake Clayton */
+class Archive {
+
+    /** The archive formats. */
+    static final String TAR = "tar", ZIP = "zip";
+
+    /** An archive of REPO. */
+    Archive(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+    }
+
+    /** Writes the files of REV, a branch or commit ID, to OUT as an
+     * archive in FORMAT. The caller must hold the writer lock, as blobs
+     * a partial clone lacks are fetched first. */
+    void write(String rev, String format, OutputStream out) {
+        String id = _repo.refs().get(rev);
+        Commit commit = _repo.tree().getCommit(id == null ? rev : id);
+        TreeMap<String, String> files = new TreeMap<>(commit.contents());
+        _repo.promisor().ensure(files);
+        long time = commit.getTime();
+        try {
+            if (format.equals(ZIP)) {
+                zip(files, time, out);
+            } else {
+                tar(files, time, out);
+            }
+            out.flush();
+        } catch (IOException | IllegalStateException e) {
+            throw new GitletException("Could not write the archive: " + e.getMessage(), e);
+        }
+    }
+
+    /** Writes FILES, names mapped to blob ID's, to OUT as a zip archive
+     * whose entries were modified at TIME. */
+    private void zip(Map<String, String> files, long time, OutputStream out)
+        throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            ZipEntry entry = new ZipEntry(e.getKey());
+            entry.setTime(time);
+            zip.putNextEntry(entry);
+            try (BlobStream in = open(e.getValue())) {
+                in.transferTo(zip);
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /** Writes FILES, names mapped to blob ID's, to OUT as a tar archive
+     * whose entries were modified at TIME. */
+    private void tar(Map<String, String> files, long time, OutputStream out)
+        throws IOException {
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            try (BlobStream in = open(e.getValue())) {
+                String name = e.getKey();
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > NAME_LENGTH) {
+                    byte[] record = pax("path", name);
+                    out.write(header("PaxHeader", 'x', record.length, time));
+                    out.write(record);
+                    pad(record.length, out);
+                }
+                out.write(header(name, '0', in.length(), time));
+                in.transferTo(out);
+                pad(in.length(), out);
+            }
+        }
+        out.write(new byte[2 * BLOCK]);
+    }
+
+    /** Returns a ustar header for an entry NAME of TYPE holding SIZE
+     * bytes, modified at TIME in milliseconds since the epoch. NAME is
+     * cut to fit. */
+    private static byte[] header(String name, char type, long size, long time) {
+        byte[] header = new byte[BLOCK];
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, 0, Math.min(bytes.length, NAME_LENGTH));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, Math.max(0, time / 1000));
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        for (int i = 148; i < 156; i += 1) {
+            header[i] = ' ';
+        }
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        octal(header, 148, 7, sum);
+        return header;
+    }
+
+    /** Returns the pax extended header record setting KEY to VALUE. Its
+     * length comes first and counts its own digits. */
+    private static byte[] pax(String key, String value) {
+        int rest = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = rest + 1;
+        while (Integer.toString(length).length() + rest != length) {
+            length += 1;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Writes VALUE in octal into the WIDTH bytes of HEADER at OFFSET,
+     * zero-filled and ending in a NUL. */
+    private static void octal(byte[] header, int offset, int width, long value) {
+        String digits = Long.toOctalString(value);
+        int start = offset + width - 1 - digits.length();
+        for (int i = offset; i < start; i += 1) {
+            header[i] = '0';
+        }
+        for (int i = 0; i < digits.length(); i += 1) {
+            header[start + i] = (byte) digits.charAt(i);
+        }
+        header[offset + width - 1] = 0;
+    }
+
+    /** Writes the zeros that fill out the last block of an entry of SIZE
+     * bytes to OUT. */
+    private static void pad(long size, OutputStream out) throws IOException {
+        int rest = (int) (size % BLOCK);
+        if (rest != 0) {
+            out.write(new byte[BLOCK - rest]);
+        }
+    }
+
+    /** Returns the contents of the blob ID. */
+    private BlobStream open(String id) throws IOException {
+        return new BlobStream(Utils.join(_gitlet, id));
+    }
+
+    /** Bytes in a tar block. */
+    private static final int BLOCK = 512;
+
+    /** Longest name a ustar header holds. */
+    private static final int NAME_LENGTH = 100;
+
+    /** The repository archived. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+}
@@ -0,0 +1,272 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** Reachability bitmaps. Every object a repository held when they were
+ * built is given a position in a fixed order, and for a selection of
+ * commits the set of objects, commits and blobs alike, reachable from
+ * that commit is stored as a bitmap over those positions, compressed in
+ * the manner of EWAH. What a commit reaches never changes, so a bitmap
+ * stays correct as the history grows; objects added since are given
+ * further positions in memory. A walk of the history that meets a commit
+ * with a bitmap ORs it in rather than going on past it, which bounds the
+ * walk by the distance to the nearest selected commit instead of by the
+ * length of the history. The bitmaps are rebuilt by gc, which is also the
+ * only thing that removes objects and so changes positions.
+ * @author Jake Clayton */
+class Bitmaps {
+
+    /** Name of the bitmap file inside a .gitlet directory. */
+    static final String FILE = "bitmaps";
+
+    /** One commit in this many, along with every branch head, is given
+     * a bitmap. */
+    static final int INTERVAL = 64;
+
+    /** Marks the start of the bitmap file. */
+    private static final int MAGIC = 0x47424d31;
+
+    /** An index with no bitmaps, whose walks cover the whole history. */
+    Bitmaps() {
+    }
+
+    /** Returns the bitmaps of the .gitlet directory GITLET, or an empty
+     * index if it has none or they cannot be read. */
+    static Bitmaps load(File gitlet) {
+        Bitmaps result = new Bitmaps();
+        File file = Utils.join(gitlet, FILE);
+        if (!file.isFile()) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new ByteArrayInputStream(Utils.readContents(file)))) {
+            if (in.readInt() != MAGIC) {
+                return new Bitmaps();
+            }
+            int objects = in.readInt();
+            for (int i = 0; i < objects; i += 1) {
+                result.position(in.readUTF());
+            }
+            int bitmaps = in.readInt();
+            for (int i = 0; i < bitmaps; i += 1) {
+                String id = in.readUTF();
+                long[] words = new long[in.readInt()];
+                for (int k = 0; k < words.length; k += 1) {
+                    words[k] = in.readLong();
+                }
+                result._bitmaps.put(id, words);
+            }
+            return result;
+        } catch (IOException | IllegalArgumentException e) {
+            return new Bitmaps();
+        }
+    }
+
+    /** Writes fresh bitmaps for the commits in HISTORY reachable from
+     * HEADS, and their blobs, to GITLET through JOURNAL. The caller must
+     * hold the writer lock. */
+    static void build(File gitlet, Map<String, Commit> history,
+                      Collection<String> heads, Journal journal) {
+        Trace.run("bitmaps.build", () -> {
+            Bitmaps result = new Bitmaps();
+            List<Commit> order = Pack.missingCommits(heads, history, List.of(), result);
+            for (Commit c : order) {
+                result.position(c.get_hashCode());
+                for (String blob : c.contents().values()) {
+                    result.position(blob);
+                }
+            }
+            HashSet<String> selected = new HashSet<>(heads);
+            for (int i = INTERVAL - 1; i < order.size(); i += INTERVAL) {
+                selected.add(order.get(i).get_hashCode());
+            }
+            for (Commit c : order) {
+                if (selected.contains(c.get_hashCode())) {
+                    BitSet reach = result.reach(List.of(c.get_hashCode()), history);
+                    result._bitmaps.put(c.get_hashCode(), compress(reach.toLongArray()));
+                }
+            }
+            journal.write(Utils.join(gitlet, FILE), result.serialize());
+        });
+    }
+
+    /** Returns the objects reachable from any of HEADS in HISTORY, as a
+     * bitmap over positions. Commits HISTORY does not know about are
+     * ignored. */
+    BitSet reach(Collection<String> heads, Map<String, Commit> history) {
+        BitSet result = new BitSet();
+        IdSet seen = new IdSet();
+        ArrayDeque<String> frontier = new ArrayDeque<>(heads);
+        while (!frontier.isEmpty()) {
+            String id = frontier.pop();
+            if (!ObjectIds.isId(id) || !seen.add(id)) {
+                continue;
+            }
+            BitSet bitmap = bitmap(id);
+            if (bitmap != null) {
+                result.or(bitmap);
+                continue;
+            }
+            Commit c = history.get(id);
+            if (c == null) {
+                continue;
+            }
+            result.set(position(id));
+            for (String blob : c.contents().values()) {
+                result.set(position(blob));
+            }
+            if (c.getParent() != null) {
+                frontier.push(c.getParent());
+            }
+            if (c.getParent2() != null) {
+                frontier.push(c.getParent2());
+            }
+        }
+        return result;
+    }
+
+    /** Returns whether the object ID is in the bitmap BITS. */
+    boolean contains(BitSet bits, String id) {
+        int i = _positions.get(id);
+        return i >= 0 && bits.get(i);
+    }
+
+    /** Returns the ID of the object at POSITION. */
+    String id(int position) {
+        return ObjectIds.unpack(_objects, ObjectIds.WORDS * position);
+    }
+
+    /** Returns the position of the object ID, giving it the next free
+     * one if it has none. */
+    int position(String id) {
+        int i = _positions.get(id);
+        if (i < 0) {
+            i = _count;
+            if (ObjectIds.WORDS * i == _objects.length) {
+                _objects = Arrays.copyOf(_objects, 2 * _objects.length);
+            }
+            if (!ObjectIds.pack(id, _objects, ObjectIds.WORDS * i)) {
+                throw new IllegalArgumentException("not an object ID: " + id);
+            }
+            _count += 1;
+            _positions.put(id, i);
+        }
+        return i;
+    }
+
+    /** Returns the bitmap of the commit ID, or null if it has none. */
+    BitSet bitmap(String id) {
+        long[] words = _bitmaps.get(id);
+        return words == null ? null : BitSet.valueOf(decompress(words));
+    }
+
+    /** Returns this index in the format load reads. */
+    private byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(_count);
+            for (int i = 0; i < _count; i += 1) {
+                out.writeUTF(id(i));
+            }
+            out.writeInt(_bitmaps.size());
+            for (Map.Entry<String, long[]> e : _bitmaps.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeInt(e.getValue().length);
+                for (long w : e.getValue()) {
+                    out.writeLong(w);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns WORDS compressed as a sequence of markers, each followed
+     * by its literal words. A marker holds, from the top bit down, the
+     * value of a run of identical all-zero or all-one words, the length
+     * of that run in the next 31 bits, and the number of literal words
+     * after the run in the low 32 bits. */
+    static long[] compress(long[] words) {
+        ArrayList<Long> out = new ArrayList<>();
+        int i = 0;
+        while (i < words.length) {
+            long fill = words[i] == -1L ? 1 : 0;
+            int run = 0;
+            while (i < words.length && run < Integer.MAX_VALUE
+                   && (words[i] == 0 || words[i] == -1L) && (words[i] == -1L) == (fill == 1)) {
+                run += 1;
+                i += 1;
+            }
+            int start = i;
+            while (i < words.length && words[i] != 0 && words[i] != -1L) {
+                i += 1;
+            }
+            out.add((fill << 63) | ((long) run << 32) | (i - start));
+            for (int k = start; k < i; k += 1) {
+                out.add(words[k]);
+            }
+        }
+        long[] result = new long[out.size()];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = out.get(k);
+        }
+        return result;
+    }
+
+    /** Returns the words compressed into COMPRESSED. */
+    static long[] decompress(long[] compressed) {
+        int length = 0;
+        for (int i = 0; i < compressed.length; i += 1) {
+            long marker = compressed[i];
+            int literals = (int) marker;
+            length += (int) ((marker >>> 32) & Integer.MAX_VALUE) + literals;
+            i += literals;
+        }
+        long[] words = new long[length];
+        int w = 0;
+        for (int i = 0; i < compressed.length; i += 1) {
+            long marker = compressed[i];
+            int run = (int) ((marker >>> 32) & Integer.MAX_VALUE);
+            if (marker < 0) {
+                for (int k = 0; k < run; k += 1) {
+                    words[w + k] = -1L;
+                }
+            }
+            w += run;
+            int literals = (int) marker;
+            System.arraycopy(compressed, i + 1, words, w, literals);
+            w += literals;
+            i += literals;
+        }
+        return words;
+    }
+
+    /** Object ID's by position, packed by ObjectIds at ObjectIds.WORDS
+     * times their position. */
+    private long[] _objects = new long[ObjectIds.WORDS * 16];
+
+    /** Number of objects with positions. */
+    private int _count;
+
+    /** Positions by object ID. */
+    private final IdIndex _positions = new IdIndex();
+
+    /** Compressed bitmaps by commit ID. */
+    private final HashMap<String, long[]> _bitmaps = new HashMap<>();
+}
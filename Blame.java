@@ -0,0 +1,329 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/** Finds the commit that last changed each line of a file. Starting at
+ * the head, the lines not yet attributed are handed from each commit to
+ * its parents through a diff of the two versions, compared by the hash
+ * of each line; a line no parent has is attributed to the commit. The
+ * walk goes newest commit first and ends as soon as every line has its
+ * commit. A parent holding the same blob takes every line without a
+ * diff. Each finished blame is kept in the directory "blame" as the
+ * commit of every line of one blob at one commit, so that a later blame
+ * from a descendant stops where it reaches it. Lines that reach the edge
+ * of a shallow history are attributed to the boundary commit, marked
+ * with a "^", and such blames are not kept.
+ * @author Jake Clayton */
+class Blame {
+
+    /** Name of the cache directory inside a .gitlet directory. */
+    static final String DIR = "blame";
+
+    /** A blame in REPO. */
+    Blame(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+        _history = repo.journal().loadHistory();
+    }
+
+    /** Returns the lines of NAME as it is in the head commit, each
+     * preceded by the commit that last changed it and its line number.
+     * The caller must hold the writer lock, as blobs a partial clone
+     * lacks are fetched and the result is cached. */
+    List<String> annotate(String name) {
+        Commit head = _history.get(_repo.refs().get(_repo.refs().activeBranch()));
+        String blob = head.getfileHash(name);
+        if (blob == null) {
+            throw new NotFoundException("File does not exist in that commit.");
+        }
+        String[] lines = lines(name, blob);
+        String[] origins = origins(head, name, blob, lines);
+        ArrayList<String> result = new ArrayList<>();
+        int width = Integer.toString(lines.length).length();
+        for (int i = 0; i < lines.length; i += 1) {
+            result.add(String.format("%-11s %" + width + "d) %s",
+                                     origins[i], i + 1, lines[i]));
+        }
+        return result;
+    }
+
+    /** Returns the commit of each of LINES, the lines of the blob BLOB of
+     * NAME in HEAD, a boundary commit prefixed by "^". */
+    private String[] origins(Commit head, String name, String blob, String[] lines) {
+        String[] origins = new String[lines.length];
+        HashMap<String, int[]> pending = new HashMap<>();
+        PriorityQueue<Commit> queue = new PriorityQueue<>(
+            (a, b) -> Long.compare(time(b), time(a)));
+        int[] all = new int[lines.length];
+        Arrays.setAll(all, i -> i);
+        pending.put(head.get_hashCode(), all);
+        queue.add(head);
+        HashMap<String, String[]> versions = new HashMap<>();
+        versions.put(blob, lines);
+        boolean boundary = false;
+        int left = lines.length;
+        while (left > 0 && !queue.isEmpty()) {
+            Commit commit = queue.poll();
+            String id = commit.get_hashCode();
+            int[] rows = pending.remove(id);
+            String version = commit.getfileHash(name);
+            String[] cached = cached(id, version);
+            if (cached != null) {
+                for (int i = 0; i < rows.length; i += 1) {
+                    if (rows[i] >= 0 && origins[rows[i]] == null) {
+                        origins[rows[i]] = cached[i];
+                        left -= 1;
+                    }
+                }
+                continue;
+            }
+            String[] mine = versions.computeIfAbsent(version, v -> lines(name, v));
+            boolean edge = false;
+            for (String parentId : new String[] {commit.getParent(), commit.getParent2()}) {
+                if (parentId == null) {
+                    continue;
+                }
+                Commit parent = _history.get(parentId);
+                if (parent == null) {
+                    edge = true;
+                    continue;
+                }
+                String theirs = parent.getfileHash(name);
+                if (theirs == null) {
+                    continue;
+                }
+                int[] passed;
+                if (ObjectIds.same(theirs, version)) {
+                    passed = rows;
+                    rows = new int[rows.length];
+                    Arrays.fill(rows, -1);
+                } else {
+                    String[] their = versions.computeIfAbsent(theirs, v -> lines(name, v));
+                    int[] match = match(mine, their);
+                    passed = new int[their.length];
+                    Arrays.fill(passed, -1);
+                    for (int i = 0; i < rows.length; i += 1) {
+                        if (rows[i] >= 0 && match[i] >= 0) {
+                            passed[match[i]] = rows[i];
+                            rows[i] = -1;
+                        }
+                    }
+                }
+                hand(parent, passed, pending, queue);
+            }
+            for (int row : rows) {
+                if (row >= 0 && origins[row] == null) {
+                    origins[row] = edge ? "^" + id : id;
+                    boundary |= edge;
+                    left -= 1;
+                }
+            }
+        }
+        if (!boundary) {
+            keep(head.get_hashCode(), blob, origins);
+        }
+        return origins;
+    }
+
+    /** Adds the rows PASSED, for each line of PARENT's version the head
+     * line it is, or -1, to those PENDING at PARENT, queuing PARENT if
+     * it holds any. */
+    private void hand(Commit parent, int[] passed, Map<String, int[]> pending,
+                      PriorityQueue<Commit> queue) {
+        boolean any = false;
+        for (int row : passed) {
+            any |= row >= 0;
+        }
+        if (!any) {
+            return;
+        }
+        int[] rows = pending.get(parent.get_hashCode());
+        if (rows == null) {
+            pending.put(parent.get_hashCode(), passed);
+            queue.add(parent);
+        } else {
+            for (int i = 0; i < rows.length; i += 1) {
+                if (rows[i] < 0) {
+                    rows[i] = passed[i];
+                }
+            }
+        }
+    }
+
+    /** Returns the lines of the blob ID of NAME, fetching it first if
+     * this is a partial clone without it. */
+    private String[] lines(String name, String id) {
+        _repo.promisor().ensure(Map.of(name, id));
+        String text = _repo.journal().readBlob(id).getcontentsasString();
+        if (text.isEmpty()) {
+            return new String[0];
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.split("\n", -1);
+    }
+
+    /** Returns, for each line of A, the index of the line of B it is
+     * kept as by a shortest edit of A into B, or -1 if it is removed.
+     * Lines are compared by hash first. */
+    static int[] match(String[] a, String[] b) {
+        int[] ha = hashes(a);
+        int[] hb = hashes(b);
+        int[] result = new int[a.length];
+        Arrays.fill(result, -1);
+        int start = 0;
+        while (start < a.length && start < b.length && same(a, ha, start, b, hb, start)) {
+            result[start] = start;
+            start += 1;
+        }
+        int endA = a.length;
+        int endB = b.length;
+        while (endA > start && endB > start
+               && same(a, ha, endA - 1, b, hb, endB - 1)) {
+            endA -= 1;
+            endB -= 1;
+            result[endA] = endB;
+        }
+        int n = endA - start;
+        int m = endB - start;
+        int offset = n + m + 1;
+        int[] v = new int[2 * offset + 1];
+        ArrayList<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= n + m; d += 1) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && same(a, ha, start + x, b, hb, start + y)) {
+                    x += 1;
+                    y += 1;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, offset, n, m, start, result);
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Fills in RESULT, as for match, from TRACE, the furthest reaching
+     * paths of each edit distance of a diff of N lines into M lines
+     * beginning at line START of both. */
+    private static void backtrack(List<int[]> trace, int offset, int n, int m,
+                                  int start, int[] result) {
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d > 0; d -= 1) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = v[offset + prevK];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x -= 1;
+                y -= 1;
+                result[start + x] = start + y;
+            }
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            x -= 1;
+            y -= 1;
+            result[start + x] = start + y;
+        }
+    }
+
+    /** Returns the hash of each of LINES. */
+    private static int[] hashes(String[] lines) {
+        int[] result = new int[lines.length];
+        for (int i = 0; i < lines.length; i += 1) {
+            result[i] = lines[i].hashCode();
+        }
+        return result;
+    }
+
+    /** Returns whether line I of A, whose hashes are HA, is line J of B,
+     * whose hashes are HB. */
+    private static boolean same(String[] a, int[] ha, int i, String[] b, int[] hb, int j) {
+        return ha[i] == hb[j] && a[i].equals(b[j]);
+    }
+
+    /** Returns when COMMIT was made, remembering it for the walk. */
+    private long time(Commit commit) {
+        return _times.computeIfAbsent(commit.get_hashCode(), id -> commit.getTime());
+    }
+
+    /** Returns the kept commit of each line of the blob BLOB at the
+     * commit ID, or null if it has not been kept. */
+    private String[] cached(String id, String blob) {
+        File file = Utils.join(_gitlet, DIR, id + "." + blob);
+        if (!file.isFile()) {
+            return null;
+        }
+        String text = Utils.readContentsAsString(file);
+        return text.isEmpty() ? new String[0] : text.split("\n");
+    }
+
+    /** Keeps ORIGINS as the commit of each line of the blob BLOB at the
+     * commit ID. */
+    private void keep(String id, String blob, String[] origins) {
+        File dir = Utils.join(_gitlet, DIR);
+        File file = Utils.join(dir, id + "." + blob);
+        if (file.isFile()) {
+            return;
+        }
+        dir.mkdir();
+        _repo.journal().write(file, String.join("\n", origins)
+                              .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Removes the kept blames of the commits DEAD from the .gitlet
+     * directory GITLET through JOURNAL. The caller must hold the writer
+     * lock. */
+    static void forget(File gitlet, Set<String> dead, Journal journal) {
+        String[] names = Utils.join(gitlet, DIR).list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            int dot = name.indexOf('.');
+            if (dot > 0 && dead.contains(name.substring(0, dot))) {
+                journal.delete(Utils.join(gitlet, DIR, name));
+            }
+        }
+    }
+
+    /** The repository whose files are blamed. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+
+    /** Its commits, by ID. */
+    private final CommitIndex _history;
+
+    /** When each commit seen so far was made. */
+    private final HashMap<String, Long> _times = new HashMap<>();
+}
@@ -2,18 +2,56 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 /** Representation of a blob, where file contents are serialized in addition
  * to other metadata.
  * @author Jake Clayton */
 public class Blob implements Serializable {
 
+    /** Fixed to the value of the original class, so that adding methods
+     * does not make existing repositories unreadable. */
+    private static final long serialVersionUID = -2174089783248322086L;
+
     /** Blob constructor. Should be immutable once created. */
     public Blob(File file) {
         _name = file.getName();
         _contents = Utils.readContents(file);
-        _stringcontents = Utils.readContentsAsString(file);
-        _hashCode = "b" + Utils.sha1(_contents, _name).substring(0, 9);
+        _stringcontents = new String(_contents, StandardCharsets.UTF_8);
+        _hashCode = hash(_contents, _name);
+    }
+
+    /** A blob of the file NAME holding CONTENTS. */
+    Blob(String name, byte[] contents) {
+        _name = name;
+        _contents = contents;
+        _stringcontents = new String(_contents, StandardCharsets.UTF_8);
+        _hashCode = hash(_contents, _name);
+    }
+
+    /** Returns the ID a blob of file NAME holding CONTENTS would have. */
+    static String hash(byte[] contents, String name) {
+        MessageDigest md = Hashing.sha1();
+        md.update(contents);
+        Hashing.update(md, name);
+        return "b" + Hashing.hex(md, ObjectIds.DIGITS);
+    }
+
+    /** Returns the ID the blob of FILE would have, reading its contents
+     * through the digest rather than into memory. */
+    static String hash(File file) {
+        MessageDigest md = Hashing.sha1();
+        Hashing.update(md, file);
+        Hashing.update(md, file.getName());
+        return "b" + Hashing.hex(md, ObjectIds.DIGITS);
+    }
+
+    /** Returns whether this blob's contents, stored under file NAME,
+     * still hash to ID, which may be a short ID made before ID's were
+     * full length. */
+    final boolean matches(String id, String name) {
+        return id.equals(_hashCode) && ObjectIds.same(id, hash(_contents, name));
     }
 
     /** Return the SHA-1 ID of the blob. */
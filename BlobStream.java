@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** The contents of a stored blob, read in pieces straight from its file
+ * rather than by deserializing the whole Blob. Only the form a Blob is
+ * written in is understood: the stream header and class description,
+ * then its fields in order, the contents being a byte array whose
+ * length comes first. Anything else fails with an IllegalStateException,
+ * and a file that ends early with an EOFException.
+ * @author Jake Clayton */
+class BlobStream extends InputStream {
+
+    /** The contents of the blob stored in FILE. */
+    BlobStream(File file) throws IOException {
+        _in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER));
+        try {
+            expect(_in.readShort() == (short) 0xaced && _in.readShort() == 5, "header");
+            expect(_in.readByte() == TC_OBJECT && _in.readByte() == TC_CLASSDESC, "object");
+            expect(_in.readUTF().equals(Blob.class.getName()), "class");
+            _in.readLong();
+            _in.readByte();
+            int count = _in.readShort();
+            _fields = new String[count];
+            for (int i = 0; i < count; i += 1) {
+                char type = (char) _in.readByte();
+                _fields[i] = _in.readUTF();
+                expect(type == '[' || type == 'L', "field " + _fields[i]);
+                byte tag = _in.readByte();
+                if (tag == TC_STRING) {
+                    _in.readUTF();
+                } else {
+                    expect(tag == TC_REFERENCE, "field type");
+                    _in.readInt();
+                }
+            }
+            expect(_in.readByte() == TC_ENDBLOCKDATA && _in.readByte() == TC_NULL, "class end");
+            fields(true);
+        } catch (IOException | RuntimeException e) {
+            _in.close();
+            throw e;
+        }
+    }
+
+    /** Returns the length of the contents. */
+    long length() {
+        return _length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        if (_left == 0) {
+            return -1;
+        }
+        int n = _in.read(buffer, off, (int) Math.min(len, _left));
+        if (n < 0) {
+            throw new EOFException();
+        }
+        _left -= n;
+        return n;
+    }
+
+    /** Returns the ID the blob records, reading past what is left of the
+     * contents, or null if it records none. */
+    String id() throws IOException {
+        _in.skipNBytes(_left);
+        _left = 0;
+        fields(false);
+        return _recorded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Reads fields from the next one up, stopping before the contents'
+     * bytes if STOP, and at the first field of no interest. */
+    private void fields(boolean stop) throws IOException {
+        for (; _next < _fields.length; _next += 1) {
+            String field = _fields[_next];
+            if (field.equals("_contents") && stop) {
+                expect(_in.readByte() == TC_ARRAY && _in.readByte() == TC_CLASSDESC
+                       && _in.readUTF().equals("[B"), "contents");
+                _in.readLong();
+                _in.readByte();
+                expect(_in.readShort() == 0 && _in.readByte() == TC_ENDBLOCKDATA
+                       && _in.readByte() == TC_NULL, "contents class");
+                _length = _in.readInt();
+                _left = _length;
+                _next += 1;
+                return;
+            } else if (field.equals("_hashCode")) {
+                expect(_in.readByte() == TC_STRING, "ID");
+                _recorded = _in.readUTF();
+            } else if (!field.equals("_contents")) {
+                _next = _fields.length;
+                return;
+            }
+        }
+    }
+
+    /** Fails with a description of WHAT unless OK. */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("bad " + what);
+        }
+    }
+
+    /** Serialization stream tags, from java.io.ObjectStreamConstants. */
+    private static final byte TC_NULL = 0x70, TC_REFERENCE = 0x71,
+        TC_CLASSDESC = 0x72, TC_OBJECT = 0x73, TC_STRING = 0x74,
+        TC_ARRAY = 0x75, TC_ENDBLOCKDATA = 0x78;
+
+    /** Bytes read from the file at a time. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The file. */
+    private final DataInputStream _in;
+
+    /** The names of the Blob's fields, in the order they are written. */
+    private final String[] _fields;
+
+    /** Position in _fields of the next field to read. */
+    private int _next;
+
+    /** Length of the contents. */
+    private long _length;
+
+    /** Bytes of the contents not yet read. */
+    private long _left;
+
+    /** The ID the blob records, once read. */
+    private String _recorded;
+}
@@ -1,43 +1,162 @@
 package gitlet;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.Map;
 
 /** Representation for a single commit containing the necessary
  * metadata and pointers. Should be immutable.
  * @author Jake Clayton */
 public class Commit implements Serializable {
 
+    /** Fixed to the value of the original class, so that adding methods
+     * does not make existing repositories unreadable. */
+    private static final long serialVersionUID = -7885916403854463299L;
+
+    /** The form of timestamps, which are part of what ID's hash. Unlike
+     * a SimpleDateFormat it is immutable, so one serves every thread. */
+    static final DateTimeFormatter FORMAT =
+        DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z");
+
     /** Normal commit constructor. */
-    public Commit(String message, HashMap<String, String> contents, String parent) {
-        _parent = parent;
-        _message = message;
-        _timestamp = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z").format(new Date());
-        _hashCode = "c" + Utils.sha1(_timestamp, _message).substring(0, 9);
-        _parent2 = null;
-        _contents = contents;
+    public Commit(String message, Map<String, String> contents, String parent) {
+        this(message, contents, parent, null);
     }
 
     /** Constructor for merge commits. */
-    public Commit(String message, HashMap<String, String> contents, String parent, String parent2) {
+    public Commit(String message, Map<String, String> contents, String parent, String parent2) {
+        this(message, contents, parent, parent2, System.currentTimeMillis());
+    }
+
+    /** Constructor for imported commits, made at TIME in milliseconds
+     * since the epoch. PARENT2 is null unless it is a merge. */
+    Commit(String message, Map<String, String> contents, String parent,
+           String parent2, long time) {
         _parent = parent;
         _parent2 = parent2;
         _message = message;
-        _timestamp = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z").format(new Date());
-        _hashCode = "c" + Utils.sha1(_timestamp, _message).substring(0, 9);
-        _contents = contents;
+        _time = time;
+        _timestamp = null;
+        _tree = Tree.of(contents);
+        _contents = null;
+        _hashCode = hash();
     }
 
-    /** Special constructor for the initial commit. */
+    /** Special constructor for the initial commit. Its ID keeps the
+     * short form, which every repository shares. */
     public Commit() {
         _parent = null;
         _parent2 = null;
         _message = "initial commit";
-        _timestamp = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z").format(new Date(0));
+        _time = 0;
+        _timestamp = format(_time);
         _hashCode = "c" + Utils.sha1(_timestamp, "init").substring(0, 9);
-        _contents = new HashMap<String, String>();
+        _tree = Tree.EMPTY;
+        _contents = null;
+    }
+
+    /** A copy of OLD, a commit read in the form made before commits kept
+     * their files as a Tree. */
+    private Commit(Commit old) {
+        _parent = old._parent;
+        _parent2 = old._parent2;
+        _message = old._message;
+        _time = old._time;
+        _timestamp = old._timestamp;
+        _hashCode = old._hashCode;
+        _tree = old._contents == null ? null : Tree.of(old._contents);
+        _contents = null;
+    }
+
+    /** A commit with ID, made at TIME, stamped TIMESTAMP if it has a short
+     * ID, with PARENT, PARENT2, MESSAGE and the files of TREE. */
+    private Commit(String id, long time, String timestamp, String parent, String parent2,
+                   String message, Tree tree) {
+        _hashCode = id;
+        _time = time;
+        _timestamp = timestamp;
+        _parent = parent;
+        _parent2 = parent2;
+        _message = message;
+        _tree = tree;
+        _contents = null;
+    }
+
+    /** Writes this commit to OUT in the form read() reads, which is
+     * smaller and quicker to decode than its serialized form. */
+    void write(DataOutput out) throws IOException {
+        writeString(out, _hashCode);
+        out.writeLong(_time);
+        writeString(out, _timestamp);
+        writeString(out, _parent);
+        writeString(out, _parent2);
+        writeString(out, _message);
+        _tree.write(out);
+    }
+
+    /** Returns the commit write() wrote to IN. */
+    static Commit read(DataInput in) throws IOException {
+        String id = readString(in);
+        long time = in.readLong();
+        String timestamp = readString(in);
+        String parent = readString(in);
+        String parent2 = readString(in);
+        String message = readString(in);
+        return new Commit(id, time, timestamp, parent, parent2, message, Tree.read(in));
+    }
+
+    /** Writes S, which may be null, to OUT as its length in UTF-8 bytes,
+     * or -1, and then those bytes. */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Returns the string writeString wrote to IN. */
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns this commit, or a copy keeping its files as a Tree if it
+     * was read in the older form. */
+    private Object readResolve() {
+        return _tree != null || _contents == null ? this : new Commit(this);
+    }
+
+    /** Returns the ID this commit would have in full: the SHA-1 hash of
+     * its time, parents, files and message, so that commits differing in
+     * any of them differ in ID. */
+    private String hash() {
+        MessageDigest md = Hashing.sha1();
+        Hashing.update(md, "commit " + _time + "\n" + _parent + "\n"
+                       + (_parent2 == null ? "" : _parent2) + "\n");
+        for (Map.Entry<String, String> e : _tree.entrySet()) {
+            Hashing.update(md, e.getKey() + "\0" + e.getValue() + "\n");
+        }
+        Hashing.update(md, "\n" + _message);
+        return "c" + Hashing.hex(md, ObjectIds.DIGITS);
     }
 
     /** Return the SHA-1 ID as a string */
@@ -45,40 +164,77 @@ public class Commit implements Serializable {
         return _hashCode;
     }
 
-    /** Prints log information: the SHA-1 ID, time of creation,
+    /** Returns whether this commit's ID still matches what it hashes: in
+     * a full ID, its time, parents, files and message; in a short one,
+     * made before ID's were full length, its timestamp and message. */
+    public final boolean isIntact() {
+        if (_hashCode.length() == ObjectIds.SHORT_DIGITS + 1) {
+            String seed = _parent == null ? "init" : _message;
+            return _hashCode.equals("c" + Utils.sha1(_timestamp, seed).substring(0, 9));
+        }
+        return _parent != null && _hashCode.equals(hash());
+    }
+
+    /** Returns whether this commit, which may have come from another
+     * repository, is intact, names its parents by commit ID, and holds
+     * only file names that pass isFileName. A Tree holds only blob ID's. */
+    final boolean isWellFormed() {
+        if (_hashCode == null || _message == null || _tree == null
+            || !ObjectIds.COMMIT.matcher(_hashCode).matches()
+            || _timestamp == null && _hashCode.length() == ObjectIds.SHORT_DIGITS + 1
+            || !isIntact()) {
+            return false;
+        }
+        for (String parent : new String[] {_parent, _parent2}) {
+            if (parent != null && !ObjectIds.COMMIT.matcher(parent).matches()) {
+                return false;
+            }
+        }
+        for (String name : _tree.keySet()) {
+            if (!isFileName(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether NAME may name a file of a commit. Commits hold
+     * the files of one flat directory, so NAME must be non-empty and
+     * hold no separator, no "..", and no NUL, and must not be ".". */
+    static boolean isFileName(String name) {
+        return name != null && !name.isEmpty() && !name.equals(".")
+            && name.indexOf('/') < 0 && name.indexOf('\\') < 0
+            && !name.contains("..") && name.indexOf('\0') < 0;
+    }
+
+    /** Prints log information to OUT: the SHA-1 ID, time of creation,
      * and the commit message. */
-    public final void printLog() {
-        System.out.println("===");
-        System.out.println("commit " + _hashCode);
+    public final void printLog(PrintStream out) {
+        out.println("===");
+        out.println("commit " + _hashCode);
         if (_parent2 != null) {
-            System.out.println("Merge: " + _parent.substring(0, 7) + " " + _parent2.substring(0, 7));
+            out.println("Merge: " + _parent.substring(0, 7) + " " + _parent2.substring(0, 7));
         }
-        System.out.println("Date: " + _timestamp);
-        System.out.println(_message);
-        System.out.println();
+        out.println("Date: " + (_timestamp != null ? _timestamp : format(_time)));
+        out.println(_message);
+        out.println();
     }
 
     /** Returns whether the commit contains a pointer to a blob
      * based on its hashcode. */
     public boolean contains(String hashcode) {
-        if (_contents == null) {
-            return false;
-        }
-        return _contents.containsValue(hashcode);
+        return _tree.containsValue(hashcode);
     }
 
     /** Returns whether a commit contains a pointer to a blob
      * based on the corresponding file name. */
     public final boolean containsFile(String fileName) {
-        if (_contents == null) {
-            return false;
-        }
-        return _contents.containsKey(fileName);
+        return _tree.containsKey(fileName);
     }
 
     /** Returns the hashcode of a blob based on the corresponding file name. */
     public final String getfileHash(String name) {
-        return _contents.get(name);
+        return _tree.get(name);
     }
 
     /** Returns the commit message. */
@@ -96,29 +252,62 @@ public class Commit implements Serializable {
         return _parent2;
     }
 
-    /** Returns a commit's contents. */
-    public final HashMap<String, String> contents() {
-        return _contents;
+    /** Returns when the commit was made, in milliseconds since the
+     * epoch, or Long.MAX_VALUE if its timestamp cannot be read. Commits
+     * made before the time was recorded have it parsed from their
+     * timestamp. */
+    public final long getTime() {
+        if (_time != 0 || _parent == null || _timestamp == null) {
+            return _time;
+        }
+        try {
+            return ZonedDateTime.parse(_timestamp, FORMAT).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MAX_VALUE;
+        }
     }
 
-    /** A date string recorded at time of this commit's creation. */
+    /** Returns the timestamp of TIME, in milliseconds since the epoch,
+     * in the local time zone. */
+    static String format(long time) {
+        return FORMAT.format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()));
+    }
+
+    /** Returns a commit's contents, which may not be changed. */
+    public final Map<String, String> contents() {
+        return _tree;
+    }
+
+    /** A date string recorded at time of this commit's creation, which
+     * a short ID hashes. Commits with full ID's have none; their date is
+     * formatted from _time as they are printed. */
     private final String _timestamp;
 
+    /** When this commit was made, in milliseconds since the epoch; 0 in
+     * commits made before it was recorded. */
+    private final long _time;
+
     /** The commit parent's SHA-1 ID. */
     private final String _parent;
 
     /** Second parent commit in case of a merge.*/
     private final String _parent2;
 
-    /** A commit's SHA-1 ID based on its timestamp and message. */
+    /** A commit's SHA-1 ID, based on its time, parents, files and
+     * message, or in a short ID on its timestamp and message alone. */
     private final String _hashCode;
 
     /** The given commit message. */
     private final String _message;
 
     /** A HashMap of Blobs saved under this commit. The keys are
-     * the corresponding file names and the keys are the SHA-1 ID's.  */
+     * the corresponding file names and the keys are the SHA-1 ID's.
+     * Only commits read in the older form have it, and readResolve
+     * turns it into _tree; it is otherwise null. */
     private final HashMap<String, String> _contents;
 
+    /** The files saved under this commit, by name. */
+    private final Tree _tree;
+
 
 }
\ No newline at end of file
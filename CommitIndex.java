@@ -0,0 +1,262 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/** The commits of a repository by ID. The ID's are kept packed by
+ * ObjectIds in an open-addressing table of longs with linear probing,
+ * and the commits in a parallel array, so that an entry costs no objects
+ * beyond its commit where a HashMap would add a node and a String key.
+ * A removal shifts later entries of its run back rather than leaving a
+ * tombstone. Its iterators do not support removal; remove by key.
+ * It is serialized as its number of commits and then the commits.
+ * @author Jake Clayton */
+class CommitIndex extends AbstractMap<String, Commit> implements Serializable {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** An empty index. */
+    CommitIndex() {
+        clear();
+    }
+
+    /** An index holding the commits of HISTORY. */
+    CommitIndex(Map<String, Commit> history) {
+        if (history instanceof CommitIndex) {
+            CommitIndex other = (CommitIndex) history;
+            _bits = other._bits;
+            _keys = other._keys.clone();
+            _values = other._values.clone();
+            _size = other._size;
+        } else {
+            clear();
+            putAll(history);
+        }
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(Object id) {
+        return get(id) != null;
+    }
+
+    @Override
+    public Commit get(Object id) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (!(id instanceof String) || !ObjectIds.pack((String) id, key, 0)) {
+            return null;
+        }
+        return _values[ObjectIds.find(_keys, _bits, key, 0)];
+    }
+
+    @Override
+    public Commit put(String id, Commit commit) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (commit == null || !ObjectIds.pack(id, key, 0)) {
+            throw new IllegalArgumentException("not a commit ID: " + id);
+        }
+        int i = ObjectIds.find(_keys, _bits, key, 0);
+        Commit old = _values[i];
+        _values[i] = commit;
+        if (old == null) {
+            System.arraycopy(key, 0, _keys, ObjectIds.WORDS * i, ObjectIds.WORDS);
+            _size += 1;
+            if (2 * _size > _values.length) {
+                grow();
+            }
+        }
+        return old;
+    }
+
+    @Override
+    public Commit remove(Object id) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (!(id instanceof String) || !ObjectIds.pack((String) id, key, 0)) {
+            return null;
+        }
+        int i = ObjectIds.find(_keys, _bits, key, 0);
+        Commit old = _values[i];
+        if (old == null) {
+            return null;
+        }
+        int mask = _values.length - 1;
+        for (int j = (i + 1) & mask; _values[j] != null; j = (j + 1) & mask) {
+            int home = ObjectIds.slot(_keys, ObjectIds.WORDS * j, _bits);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                System.arraycopy(_keys, ObjectIds.WORDS * j, _keys, ObjectIds.WORDS * i,
+                                 ObjectIds.WORDS);
+                _values[i] = _values[j];
+                i = j;
+            }
+        }
+        Arrays.fill(_keys, ObjectIds.WORDS * i, ObjectIds.WORDS * (i + 1), 0);
+        _values[i] = null;
+        _size -= 1;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        _bits = 4;
+        _keys = new long[ObjectIds.WORDS << _bits];
+        _values = new Commit[1 << _bits];
+        _size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Commit>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return _size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, Commit>> iterator() {
+                return new Slots<>(i -> new SimpleImmutableEntry<>(
+                    ObjectIds.unpack(_keys, ObjectIds.WORDS * i), _values[i]));
+            }
+        };
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return _size;
+            }
+
+            @Override
+            public boolean contains(Object id) {
+                return containsKey(id);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Slots<>(i -> ObjectIds.unpack(_keys, ObjectIds.WORDS * i));
+            }
+        };
+    }
+
+    @Override
+    public Collection<Commit> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public int size() {
+                return _size;
+            }
+
+            @Override
+            public Iterator<Commit> iterator() {
+                return new Slots<>(i -> _values[i]);
+            }
+        };
+    }
+
+    /** Iterates over the occupied slots, giving what AT makes of each. */
+    private class Slots<T> implements Iterator<T> {
+        /** An iterator giving AT of each occupied slot. */
+        Slots(IntFunction<T> at) {
+            _at = at;
+            skip();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _next < _values.length;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = _at.apply(_next);
+            _next += 1;
+            skip();
+            return result;
+        }
+
+        /** Moves _next to the next occupied slot at or after it. */
+        private void skip() {
+            while (_next < _values.length && _values[_next] == null) {
+                _next += 1;
+            }
+        }
+
+        /** What the iterator gives of a slot. */
+        private final IntFunction<T> _at;
+
+        /** The slot next() gives. */
+        private int _next;
+    }
+
+    /** Doubles the table. */
+    private void grow() {
+        long[] oldKeys = _keys;
+        Commit[] oldValues = _values;
+        _bits += 1;
+        _keys = new long[ObjectIds.WORDS << _bits];
+        _values = new Commit[1 << _bits];
+        for (int i = 0; i < oldValues.length; i += 1) {
+            if (oldValues[i] != null) {
+                int j = ObjectIds.find(_keys, _bits, oldKeys, ObjectIds.WORDS * i);
+                System.arraycopy(oldKeys, ObjectIds.WORDS * i, _keys, ObjectIds.WORDS * j,
+                                 ObjectIds.WORDS);
+                _values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /** Writes the number of commits and then the commits to OUT. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeInt(_size);
+        for (Commit c : values()) {
+            out.writeObject(c);
+        }
+    }
+
+    /** Reads the commits writeObject wrote from IN. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        clear();
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("bad commit count: " + size);
+        }
+        for (int i = 0; i < size; i += 1) {
+            Commit c = (Commit) in.readObject();
+            put(c.get_hashCode(), c);
+        }
+    }
+
+    /** Log base 2 of the number of slots. */
+    private transient int _bits;
+
+    /** The packed ID's, ObjectIds.WORDS longs per slot. */
+    private transient long[] _keys;
+
+    /** The commit of the ID in the same slot of _keys, null marking an
+     * empty slot. */
+    private transient Commit[] _values;
+
+    /** Number of commits. */
+    private transient int _size;
+}
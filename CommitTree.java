@@ -2,66 +2,64 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /** Represents the commit tree, where commits are made and serialized. */
 public class CommitTree {
 
-    /** The command working directory. */
-    static final File CWD = new File(System.getProperty("user.dir"));
-
-    /** The .gitlet directory where all persistence is stored. */
-    static final File GITLET_FOLDER = Main.getDirectory();
-
-    /** This is a file where all commits and their ID's are stored. */
-    static final File COMMIT_HISTORY = Utils.join(GITLET_FOLDER, "commit_history");
-
-    /** This is a file where branch and branch head information is stored. */
-    static final File INFO_FILE = Utils.join(GITLET_FOLDER, "info");
+    /** The commit tree of REPO. */
+    CommitTree(Repository repo) {
+        _repo = repo;
+        _cwd = repo.workTree();
+        _gitlet = repo.gitletDir();
+        _refs = repo.refs();
+        _journal = repo.journal();
+    }
 
-    /** Simple helper function for updating _commithistory and _info from stored states. */
-    @SuppressWarnings("unchecked")
-    private static void update() {
-        _info = Utils.readObject(INFO_FILE, HashMap.class);
-        _commithistory = Utils.readObject(COMMIT_HISTORY, HashMap.class);
+    /** Simple helper function for updating _commithistory from stored states. */
+    private void update() {
+        _commithistory = Trace.call("history.load", _journal::loadHistory);
     }
 
-    /** Saves changes made to _info and _commithistory into persistence. */
-    private static void save() {
-        Utils.writeObject(INFO_FILE, _info);
-        Utils.writeObject(COMMIT_HISTORY, _commithistory);
+    /** Adds COMMIT to _commithistory and to persistence. Branches are
+     * only moved after this, so a reader that reads a branch and then the
+     * history never sees a head missing from the history. */
+    private void save(Commit commit) {
+        _commithistory.put(commit.get_hashCode(), commit);
+        _journal.addCommits(List.of(commit));
     }
 
     /** Adds a commit, updates persistence files, and clears the staging area. */
     @SuppressWarnings("unchecked")
-    public static void addCommit(String message, String secondparent) {
-        if (StagingArea.isEmpty()) {
-            Main.error("No changes added to the commit");
+    public void addCommit(String message, String secondparent) {
+        if (_repo.staging().isEmpty()) {
+            throw new GitletException("No changes added to the commit");
         }
+        String branch = _refs.activeBranch();
+        String lastId = _refs.get(branch);
         update();
-        Commit lastCommit = _commithistory.get(_info.get("Active Head"));
-        HashMap<String, String> oldContents = lastCommit.contents();
+        Commit lastCommit = _commithistory.get(lastId);
+        Map<String, String> oldContents = lastCommit.contents();
         HashMap<String, String> newContents = new HashMap<>(oldContents);
-        File[] toCommit = StagingArea.filestoAdd();
-        File[] toRemove = StagingArea.filestoRemove();
+        File[] toCommit = _repo.staging().filestoAdd();
+        File[] toRemove = _repo.staging().filestoRemove();
         Blob cur;
         for (int i = 0; i < toCommit.length; i++) {
             File process = toCommit[i];
             String name = process.getName();
             cur = Utils.readObject(process, Blob.class);
-            if (oldContents.containsKey(name) && oldContents.get(name).equals(cur.get_hashCode())) {
+            if (ObjectIds.same(oldContents.get(name), cur.get_hashCode())) {
             } else {
                 newContents.put(name, cur.get_hashCode());
-                File newSave = new File(GITLET_FOLDER, cur.get_hashCode());
-                if (!newSave.exists()) {
-                    try {
-                        newSave.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-                Utils.writeObject(newSave, cur);
+                File newSave = new File(_gitlet, cur.get_hashCode());
+                _journal.write(newSave, Utils.serialize(cur));
             }
             process.delete();
         }
@@ -76,79 +74,152 @@ public class CommitTree {
         } else {
             newHead = new Commit(message, newContents, lastCommit.get_hashCode(), secondparent);
         }
-        _info.replace("Active Head", newHead.get_hashCode());
-        _commithistory.put(newHead.get_hashCode(), newHead);
-        save();
+        save(newHead);
+        if (!_refs.compareAndSet(branch, lastId, newHead.get_hashCode())) {
+            throw new RejectedException("The current branch moved during the commit.");
+        }
     }
 
     /** Creates the first commit, initializes appropriate persistence files. */
     @SuppressWarnings("unchecked")
-    public static void initCommit() {
+    public void initCommit() {
         Commit firstCommit = new Commit();
-        _info = new HashMap<String, String>();
-        _commithistory = new HashMap<String, Commit>();
-        _info.put("Active Branch", "master");
-        _info.put("Active Head", firstCommit.get_hashCode());
-        _commithistory.put(firstCommit.get_hashCode(), firstCommit);
-        save();
+        _commithistory = new CommitIndex();
+        save(firstCommit);
+        _refs.initialize("master", firstCommit.get_hashCode());
     }
 
     /** Retrieves the current head commit. */
-    public static Commit getHead() {
+    public Commit getHead() {
+        String head = _refs.head();
         update();
-        return _commithistory.get(_info.get("Active Head"));
+        return _commithistory.get(head);
     }
 
-    /** Retrieves a commit based on its SHA-1 ID. */
-    public static Commit getCommit(String ID) {
+    /** Returns the full map of commit ID's to commits. */
+    public CommitIndex getHistory() {
         update();
-        if (!_commithistory.containsKey(ID)) {
-            Main.error("No commit with that id exists.");
+        return _commithistory;
+    }
+
+    /** Retrieves a commit based on its SHA-1 ID, or on a prefix of it
+     * that no other commit's ID begins with. */
+    public Commit getCommit(String ID) {
+        update();
+        Commit result = _commithistory.get(ID);
+        if (result != null) {
+            return result;
+        }
+        String found = null;
+        for (String id : _commithistory.keySet()) {
+            if (id.startsWith(ID)) {
+                if (found != null) {
+                    throw new GitletException("More than one commit has an id beginning with " + ID + ".");
+                }
+                found = id;
+            }
         }
-        return _commithistory.get(ID);
+        if (found == null) {
+            throw new NotFoundException("No commit with that id exists.");
+        }
+        return _commithistory.get(found);
     }
 
-    /** Prints out the commit log information in the head commit's history. */
-    public static void printCommitHistory() {
+    /** Prints out the commit log information in the head commit's history,
+     * stopping at the shallow boundary of a shallow repository. */
+    public void printCommitHistory() {
         Commit temp = getHead();
         while (true) {
-            temp.printLog();
-            if (temp.getParent() == null) {
+            temp.printLog(_repo.out());
+            if (temp.getParent() == null
+                || !_commithistory.containsKey(temp.getParent())) {
                 return;
             }
             temp = _commithistory.get(temp.getParent());
         }
     }
 
+    /** Prints the log of the current branch, leaving out the commits not
+     * made from SINCE to UNTIL, in milliseconds since the epoch. Those
+     * in range, and the commits the walk passes on its way to them, are
+     * the only ones read from the history snapshot, through the TimeIndex,
+     * and the walk ends once every one of them has been printed. */
+    public void printCommitHistory(long since, long until) {
+        TimeIndex index = _journal.timeIndex();
+        Function<String, Commit> lookup;
+        List<Commit> range;
+        if (index == null) {
+            update();
+            lookup = _commithistory::get;
+            range = TimeIndex.range(_commithistory.values(), since, until);
+        } else {
+            lookup = index::get;
+            range = index.range(since, until);
+        }
+        CommitIndex wanted = new CommitIndex();
+        for (Commit c : range) {
+            wanted.put(c.get_hashCode(), c);
+        }
+        int left = wanted.size();
+        String id = _refs.head();
+        while (left > 0 && id != null) {
+            Commit temp = wanted.get(id);
+            if (temp != null) {
+                temp.printLog(_repo.out());
+                left -= 1;
+            } else {
+                temp = lookup.apply(id);
+                if (temp == null) {
+                    return;
+                }
+            }
+            id = temp.getParent();
+        }
+    }
+
     /** Prints out the commit log information for every commit made. */
-    public static void printAllCommits() {
+    public void printAllCommits() {
         update();
         for (Commit commit : _commithistory.values()) {
-            commit.printLog();
+            commit.printLog(_repo.out());
+        }
+    }
+
+    /** Prints out the commit log information for every commit made from
+     * SINCE to UNTIL, in milliseconds since the epoch, newest first,
+     * reading from the history snapshot only those commits. */
+    public void printAllCommits(long since, long until) {
+        TimeIndex index = _journal.timeIndex();
+        List<Commit> range = index != null ? index.range(since, until)
+            : TimeIndex.range(getHistory().values(), since, until);
+        for (Commit commit : range) {
+            commit.printLog(_repo.out());
         }
     }
 
     /** Logic and work for the git checkout command. */
     @SuppressWarnings("unchecked")
-    public static void checkout(String... args) {
+    public void checkout(String... args) {
         Commit head = getHead();
         if (args.length == 1) {
-            if (_info.get("Active Branch").equals(args[0])) {
-                Main.error("No need to checkout the current branch.");
-            } else if (!_info.containsKey(args[0])) {
-                Main.error("No such branch exists.");
+            if (_refs.activeBranch().equals(args[0])) {
+                throw new GitletException("No need to checkout the current branch.");
+            } else if (_refs.get(args[0]) == null) {
+                throw new NotFoundException("No such branch exists.");
             }
-            Commit newHead = _commithistory.get(_info.get(args[0]));
-            for (String fileName : newHead.contents().keySet()) {
-                if (!head.containsFile(fileName) && Utils.join(CWD, fileName).exists()) {
-                    Main.error("There is an untracked file in the way; delete it, or add and commit it first.");
+            Commit newHead = _commithistory.get(_refs.get(args[0]));
+            Predicate<String> sparse = Sparse.load(_gitlet);
+            HashMap<String, String> overwrite = included(newHead.contents(), sparse);
+            for (String fileName : overwrite.keySet()) {
+                if (!head.containsFile(fileName) && Utils.join(_cwd, fileName).exists()) {
+                    throw new RejectedException("There is an untracked file in the way; delete it, or add and commit it first.");
                 }
             }
-            HashMap<String, String> overwrite = new HashMap<>(newHead.contents());
-            HashMap<String, String> curToDelete = new HashMap<>(head.contents());
+            _repo.promisor().ensure(overwrite);
+            HashMap<String, String> curToDelete = included(head.contents(), sparse);
             for (String fileName : overwrite.keySet()) {
                 curToDelete.remove(fileName);
-                File old = Utils.join(CWD, fileName);
+                File old = Utils.join(_cwd, fileName);
                 if (!old.exists()) {
                     try {
                         old.createNewFile();
@@ -156,232 +227,207 @@ public class CommitTree {
                         e.printStackTrace();
                     }
                 }
-                File b = Utils.join(GITLET_FOLDER, overwrite.get(fileName));
-                Utils.writeContents(old, Utils.readObject(b, Blob.class).returnContents());
+                Utils.writeContents(old, _journal.readBlob(overwrite.get(fileName)).returnContents());
             }
             for (String name : curToDelete.keySet()) {
-                Utils.join(CWD, name).delete();
+                Utils.join(_cwd, name).delete();
             }
-            _info.remove(args[0]);
-            _info.put(_info.get("Active Branch"), _info.get("Active Head"));
-            _info.replace("Active Branch", args[0]);
-            _info.replace("Active Head", newHead.get_hashCode());
-            StagingArea.clear();
-            save();
+            _refs.setActive(args[0]);
+            _repo.staging().clear();
         } else if (args[0].equals("--") && args.length == 2) {
-            if (!head.containsFile(args[1])) {
-                Main.error("File does not exist in that commit.");
-            }
-            File thing = Utils.join(GITLET_FOLDER, head.getfileHash(args[1]));
-            assert thing.exists();
-            File changeThis = Utils.join(CWD, args[1]);
-            if (!changeThis.exists()) {
-                try {
-                    changeThis.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            Blob changeTo = Utils.readObject(thing, Blob.class);
-            Utils.writeContents(changeThis, changeTo.returnContents());
+            restore(head, args[1]);
         } else if (args.length == 3 && args[1].equals("--")) {
-            update();
-            if (!_commithistory.containsKey(args[0])) {
-                Main.error("No commit with that id exists.");
-            }
-            Commit ref = _commithistory.get(args[0]);
-            if (!ref.containsFile(args[2])) {
-                Main.error("File does not exist in that commit.");
-            }
-            File thing = Utils.join(GITLET_FOLDER, ref.getfileHash(args[2]));
-            assert thing.exists();
-            File changeThis = Utils.join(CWD, args[2]);
-            if (!changeThis.exists()) {
-                try {
-                    changeThis.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            Blob changeTo = Utils.readObject(thing, Blob.class);
-            Utils.writeContents(changeThis, changeTo.returnContents());
+            restore(getCommit(args[0]), args[2]);
         } else {
-            Main.error("Incorrect operands.");
+            throw new GitletException("Incorrect operands.");
         }
     }
 
-    /** Goes through all commits and prints out their ID's if they contain
-     * the given message.
-     * @param args */
-    public static void find(String... args) {
-        if (args.length != 2) {
-            Main.error("Incorrect operands.");
+    /** Writes FILENAME in the working tree as it is in COMMIT. */
+    private void restore(Commit commit, String fileName) {
+        if (!commit.containsFile(fileName)) {
+            throw new NotFoundException("File does not exist in that commit.");
         }
+        _repo.promisor().ensure(Map.of(fileName, commit.getfileHash(fileName)));
+        File changeThis = Utils.join(_cwd, fileName);
+        if (!changeThis.exists()) {
+            try {
+                changeThis.createNewFile();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        Blob changeTo = _journal.readBlob(commit.getfileHash(fileName));
+        Utils.writeContents(changeThis, changeTo.returnContents());
+    }
+
+    /** Goes through all commits and prints out their ID's if they contain
+     * the given MESSAGE. */
+    public void find(String message) {
         update();
         boolean found = false;
         for (Commit commit : _commithistory.values()) {
-            if (commit.getMessage().equals(args[1])) {
-                System.out.println(commit.get_hashCode());
+            if (commit.getMessage().equals(message)) {
+                _repo.out().println(commit.get_hashCode());
                 found = true;
             }
         }
         if (!found) {
-            Main.error("Found no commit with that message.");
+            throw new NotFoundException("Found no commit with that message.");
         }
     }
 
     /** Creates a new branch pointer at the current commit. */
-    public static void branch(String branch) {
-        Commit head = getHead();
-        if (_info.containsKey(branch)) {
-            Main.error("A branch with that name already exists.");
+    public void branch(String branch) {
+        if (!_refs.compareAndSet(branch, null, _refs.head())) {
+            throw new GitletException("A branch with that name already exists.");
         }
-        _info.put(branch, head.get_hashCode());
-        save();
     }
 
     /** Removes the branch pointer but does not delete any commits or files. */
-    public static void rm_branch(String branch) {
-        update();
-        if (_info.get("Active Branch").equals(branch)) {
-            Main.error("Cannot remove the current branch.");
-        } else if (!_info.containsKey(branch)) {
-            Main.error("A branch with that name does not exist.");
+    public void rmBranch(String branch) {
+        if (_refs.activeBranch().equals(branch)) {
+            throw new GitletException("Cannot remove the current branch.");
+        } else if (_refs.get(branch) == null) {
+            throw new NotFoundException("A branch with that name does not exist.");
         }
-        _info.remove(branch);
-        save();
+        _refs.delete(branch);
     }
 
-    /** Resets the CWD to the contents of a commit given its ID.
+    /** Resets the _cwd to the contents of a commit given its ID.
      * Clears the staging area, the given commit is now the active head. */
-    public static void reset(String... args) {
-        if (args.length != 2) {
-            Main.error("Incorrect operands.");
-        }
-        HashMap<String, String> tracked = getHead().contents();
-        if (!_commithistory.containsKey(args[1])) {
-            Main.error("No commit with that id exists.");
-        }
-        Commit newHead = _commithistory.get(args[1]);
-        HashMap<String, String> newCont = newHead.contents();
+    public void reset(String id) {
+        Map<String, String> tracked = getHead().contents();
+        Commit newHead = getCommit(id);
+        Predicate<String> sparse = Sparse.load(_gitlet);
+        HashMap<String, String> newCont = included(newHead.contents(), sparse);
         HashMap<String, String> check = new HashMap<>(newCont);
-        check.putAll(tracked);
+        check.putAll(included(tracked, sparse));
         for (String fileName : newCont.keySet()) {
-            if (!tracked.containsKey(fileName) && Utils.join(CWD, fileName).exists()) {
-                Main.error("There is an untracked file in the way; delete it, or add and commit it first.");
+            if (!tracked.containsKey(fileName) && Utils.join(_cwd, fileName).exists()) {
+                throw new RejectedException("There is an untracked file in the way; delete it, or add and commit it first.");
             }
         }
+        _repo.promisor().ensure(newCont);
         for (String fileName : check.keySet()) {
             if (newCont.containsKey(fileName)) {
-                checkout(newHead.get_hashCode(), "--", fileName);
+                restore(newHead, fileName);
             }
             if (tracked.containsKey(fileName) && !newCont.containsKey(fileName)) {
-                File remove = Utils.join(CWD, fileName);
+                File remove = Utils.join(_cwd, fileName);
                 if (remove.exists()) {
                     remove.delete();
                 }
             }
         }
-        _info.replace("Active Head", newHead.get_hashCode());
-        StagingArea.clear();
-        save();
+        _refs.set(_refs.activeBranch(), newHead.get_hashCode());
+        _repo.staging().clear();
     }
 
-    /** Helper function for merge to find the splitpoint commit. */
-    private static Commit findSplit(HashSet ids, HashSet<Commit> commits) {
-        String ID;
-        HashSet copy = new HashSet<>();
-        for (Commit check : commits) {
-            ID = check.get_hashCode();
-            if (ids.contains(ID)) {
-                return _commithistory.get(ID);
+    /** Returns the split point of merging OTHER into HEAD: the first
+     * commit, searching back from HEAD a generation at a time, that is
+     * OTHER, a first-parent ancestor of OTHER, or a second parent of one.
+     * HISTORY holds every commit, unless the repository is shallow, in
+     * which case the search stops at the boundary and null is returned if
+     * it found no split point short of it. */
+    static Commit findSplit(Commit head, Commit other, Map<String, Commit> history) {
+        IdSet ids = new IdSet();
+        ids.add(other.get_hashCode());
+        Commit temp = other;
+        while (temp != null && temp.getParent() != null) {
+            ids.add(temp.getParent());
+            if (temp.getParent2() != null) {
+                ids.add(temp.getParent2());
             }
-            if (check.getParent2() != null) {
-                copy.add(_commithistory.get(check.getParent2()));
+            temp = history.get(temp.getParent());
+        }
+        HashSet<Commit> commits = new HashSet<>();
+        commits.add(head);
+        while (!commits.isEmpty()) {
+            HashSet<Commit> next = new HashSet<>();
+            for (Commit check : commits) {
+                String id = check.get_hashCode();
+                if (ids.contains(id)) {
+                    return history.get(id);
+                }
+                for (String parent : new String[] {check.getParent2(), check.getParent()}) {
+                    if (parent != null && history.containsKey(parent)) {
+                        next.add(history.get(parent));
+                    }
+                }
             }
-            copy.add(_commithistory.get(check.getParent()));
+            commits = next;
         }
-        return findSplit(ids, copy);
+        return null;
     }
 
-    /** Carries out most of the logic and work for the merge command. */
-    public static void merge(String... args) {
-        if (args.length != 2) {
-            Main.error("Incorrect operands.");
-        } else if (!StagingArea.isEmpty()) {
-            Main.error("You have uncommitted changes.");
+    /** Carries out most of the logic and work for merging BRANCH into
+     * the current branch. */
+    public void merge(String branch) {
+        if (!_repo.staging().isEmpty()) {
+            throw new RejectedException("You have uncommitted changes.");
         }
         Commit h = getHead();
-        if (_info.get("Active Branch").equals(args[1])) {
-            Main.error("Cannot merge a branch with itself.");
-        } else if (!_info.containsKey(args[1])) {
-            Main.error("A branch with that name does not exist.");
-        }
-        Commit m = _commithistory.get(_info.get(args[1]));
-        HashSet<String> parentSet = new HashSet<>();
-        parentSet.add(m .get_hashCode());
-        Commit temp = m;
-        while (true) {
-            if (temp.getParent() == null) {
-                break;
-            }
-            parentSet.add(temp.getParent());
-            if (temp.getParent2() != null) {
-                parentSet.add(temp.getParent2());
-            }
-            temp = _commithistory.get(temp.getParent());
+        if (_refs.activeBranch().equals(branch)) {
+            throw new GitletException("Cannot merge a branch with itself.");
+        } else if (_refs.get(branch) == null) {
+            throw new NotFoundException("A branch with that name does not exist.");
+        }
+        Commit m = _commithistory.get(_refs.get(branch));
+        Commit splitPoint =
+            Trace.call("merge.split", () -> findSplit(h, m, _commithistory));
+        if (splitPoint == null) {
+            throw new RejectedException("No common ancestor within the shallow history;"
+                + " fetch with a greater --depth first.");
         }
-        HashSet<Commit> checkSet = new HashSet<>();
-        checkSet.add(h);
-        Commit splitPoint = findSplit(parentSet, checkSet);
 
-        if (splitPoint.get_hashCode().equals(_info.get("Active Head"))) {
-            checkout(args[1]);
-            System.out.println("Current branch fast-forwarded.");
+        if (splitPoint.get_hashCode().equals(h.get_hashCode())) {
+            checkout(branch);
+            _repo.out().println("Current branch fast-forwarded.");
             return;
-        } else if (splitPoint.get_hashCode().equals(_info.get(args[1]))) {
-            System.out.println("Given branch is an ancestor of the current branch.");
+        } else if (splitPoint.get_hashCode().equals(m.get_hashCode())) {
+            _repo.out().println("Given branch is an ancestor of the current branch.");
             return;
         }
-        HashMap<String, String> S = splitPoint.contents();
-        HashMap<String, String> H = h.contents();
-        HashMap<String, String> B = m .contents();
+        Map<String, String> S = splitPoint.contents();
+        Map<String, String> H = h.contents();
+        Map<String, String> B = m .contents();
         HashMap<String, String> allContents = new HashMap<>();
         allContents.putAll(S);
         allContents.putAll(H);
         allContents.putAll(B);
-        for (String fileName : B.keySet()) {
-            if (!h.containsFile(fileName) && Utils.join(CWD, fileName).exists()) {
-                Main.error("There is an untracked file in the way; delete it, or add and commit it first.");
+        Predicate<String> sparse = Sparse.load(_gitlet);
+        ensureMerged(allContents.keySet(), S, H, B, sparse);
+        for (String fileName : included(B, sparse).keySet()) {
+            if (!h.containsFile(fileName) && Utils.join(_cwd, fileName).exists()) {
+                throw new RejectedException("There is an untracked file in the way; delete it, or add and commit it first.");
             }
         }
         for (String f : allContents.keySet()) {
             boolean conflict = false;
             if (S.containsKey(f) && H.containsKey(f) && B.containsKey(f)) {
-                if (S.get(f).equals(H.get(f)) && !S.get(f).equals(B.get(f))) {
-                    checkout(m .get_hashCode(), "--", f);
-                    StagingArea.add(Utils.join(CWD, f));
-                } else if (S.get(f).equals(B.get(f)) && !S.get(f).equals(H.get(f))) {
-                } else if (H.get(f).equals(B.get(f)) && !S.get(f).equals(H.get(f))) {
-                } else if (!S.get(f).equals(B.get(f)) && !S.get(f).equals(H.get(f))) {
-                    if (!B.get(f).equals(H.get(f))) {
+                if (ObjectIds.same(S.get(f), H.get(f)) && !ObjectIds.same(S.get(f), B.get(f))) {
+                    take(m, f, sparse);
+                } else if (ObjectIds.same(S.get(f), B.get(f)) && !ObjectIds.same(S.get(f), H.get(f))) {
+                } else if (ObjectIds.same(H.get(f), B.get(f)) && !ObjectIds.same(S.get(f), H.get(f))) {
+                } else if (!ObjectIds.same(S.get(f), B.get(f)) && !ObjectIds.same(S.get(f), H.get(f))) {
+                    if (!ObjectIds.same(B.get(f), H.get(f))) {
                         conflict = true;
                     }
                 }
             } else if (!S.containsKey(f) && H.containsKey(f) && !B.containsKey(f)) {
             } else if (!S.containsKey(f) && !H.containsKey(f) && B.containsKey(f)) {
-                checkout(m.get_hashCode(), "--", f);
-                StagingArea.add(Utils.join(CWD, f));
-            } else if (S.containsKey(f) && S.get(f).equals(H.get(f)) && isAbsent(f, m)) {
-                StagingArea.rm(f);
-            } else if (S.containsKey(f) && S.get(f).equals(B.get(f)) && isAbsent(f, h)) {
+                take(m, f, sparse);
+            } else if (S.containsKey(f) && ObjectIds.same(S.get(f), H.get(f)) && isAbsent(f, m)) {
+                _repo.staging().rm(f);
+            } else if (S.containsKey(f) && ObjectIds.same(S.get(f), B.get(f)) && isAbsent(f, h)) {
             } else if (S.containsKey(f) && !B.containsKey(f) && !H.containsKey(f)) {
             } else {
-                if (!H.containsKey(f) && !S.get(f).equals(B.get(f))) {
+                if (!H.containsKey(f) && !ObjectIds.same(S.get(f), B.get(f))) {
                     conflict = true;
-                } else if (!B.containsKey(f) && !S.get(f).equals(H.get(f))) {
+                } else if (!B.containsKey(f) && !ObjectIds.same(S.get(f), H.get(f))) {
                     conflict = true;
-                } else if (!S.containsKey(f) && !H.get(f).equals(B.get(f))) {
+                } else if (!S.containsKey(f) && !ObjectIds.same(H.get(f), B.get(f))) {
                     conflict = true;
                 }
             }
@@ -389,12 +435,12 @@ public class CommitTree {
                 Blob cur = null;
                 Blob merge = null;
                 if (H.containsKey(f)) {
-                    cur = Utils.readObject(Utils.join(GITLET_FOLDER, H.get(f)), Blob.class);
+                    cur = _journal.readBlob(H.get(f));
                 }
                 if (B.containsKey(f)) {
-                    merge = Utils.readObject(Utils.join(GITLET_FOLDER, B.get(f)), Blob.class);
+                    merge = _journal.readBlob(B.get(f));
                 }
-                File replace = Utils.join(CWD, f);
+                File replace = Utils.join(_cwd, f);
                 if (replace.exists()) {
                     try {
                         replace.createNewFile();
@@ -418,23 +464,121 @@ public class CommitTree {
                 }
                 newCont += ">>>>>>>\r\n";
                 Utils.writeContents(replace,newCont);
-                StagingArea.add(replace);
-                System.out.println("Encountered a merge conflict.");
+                _repo.staging().add(replace);
+                _repo.out().println("Encountered a merge conflict.");
+            }
+        }
+        addCommit("Merged " + branch + " into " + _refs.activeBranch() + ".", m.get_hashCode());
+    }
+
+    /** Makes sure the blobs the merge of NAMES will read are present,
+     * fetching them in one batch: in H and B, the head and the given
+     * branch, those that differ from S, the split point, and from each
+     * other, which will be written into conflicts, and in B those that
+     * alone differ from S, which will be taken, if SPARSE includes them.
+     * Taken files that SPARSE leaves out are only staged, and staging
+     * fetches what it needs itself. */
+    private void ensureMerged(Set<String> names, Map<String, String> S,
+                              Map<String, String> H, Map<String, String> B,
+                              Predicate<String> sparse) {
+        HashMap<String, String> fromHead = new HashMap<>();
+        HashMap<String, String> fromOther = new HashMap<>();
+        for (String f : names) {
+            String s = S.get(f);
+            String h = H.get(f);
+            String b = B.get(f);
+            if (ObjectIds.same(s, b)) {
+                continue;
+            }
+            boolean taken = ObjectIds.same(s, h);
+            if (b != null && (taken ? sparse.test(f) : !ObjectIds.same(h, b))) {
+                fromOther.put(f, b);
             }
+            if (h != null && !taken && !ObjectIds.same(h, b)) {
+                fromHead.put(f, h);
+            }
+        }
+        _repo.promisor().ensure(fromHead, fromOther);
+    }
+
+    /** Stages FILENAME as it is in COMMIT, writing it to the working
+     * tree too unless SPARSE leaves it out. */
+    private void take(Commit commit, String fileName, Predicate<String> sparse) {
+        if (sparse.test(fileName)) {
+            restore(commit, fileName);
+            _repo.staging().add(Utils.join(_cwd, fileName));
+        } else {
+            _repo.staging().stage(fileName, commit.getfileHash(fileName));
+        }
+    }
+
+    /** Returns the entries of FILES, a map of file names to blob ID's,
+     * whose names SPARSE includes. */
+    private static HashMap<String, String> included(Map<String, String> files,
+                                                    Predicate<String> sparse) {
+        HashMap<String, String> result = new HashMap<>();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            if (sparse.test(e.getKey())) {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+        return result;
+    }
+
+    /** Makes PATTERNS the sparse checkout patterns, or makes the checkout
+     * full if there are none, and brings the working tree in line: files
+     * of the head commit newly included are written, and those newly left
+     * out are removed unless they have been changed. */
+    public void sparse(List<String> patterns) {
+        for (String pattern : patterns) {
+            try {
+                FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            } catch (IllegalArgumentException e) {
+                throw new GitletException("Invalid pattern: " + pattern);
+            }
+        }
+        Commit head = getHead();
+        Predicate<String> before = Sparse.load(_gitlet);
+        Sparse.set(_gitlet, patterns, _journal);
+        Predicate<String> after = Sparse.load(_gitlet);
+        HashMap<String, String> added = new HashMap<>();
+        for (Map.Entry<String, String> e : head.contents().entrySet()) {
+            String name = e.getKey();
+            File file = Utils.join(_cwd, name);
+            if (after.test(name) && !before.test(name) && !file.exists()) {
+                added.put(name, e.getValue());
+            } else if (!after.test(name) && before.test(name) && file.exists()
+                       && ObjectIds.same(Blob.hash(file), e.getValue())) {
+                file.delete();
+            }
+        }
+        _repo.promisor().ensure(added);
+        for (String name : added.keySet()) {
+            restore(head, name);
         }
-        addCommit("Merged " + args[1] + " into " + _info.get("Active Branch") + ".", m.get_hashCode());
-        save();
     }
 
     /** Helper function for merge, returns whether a file is absent or not. */
-    public static boolean isAbsent(String fileName, Commit commit) {
-        return !commit.containsFile(fileName) || !StagingArea.isStaged(fileName);
+    public boolean isAbsent(String fileName, Commit commit) {
+        return !commit.containsFile(fileName) || !_repo.staging().isStaged(fileName);
     }
 
-    /** Contains branch and branch head information. */
-    private static HashMap<String, String> _info;
+    /** The repository this is the commit tree of. */
+    private final Repository _repo;
+
+    /** The working directory. */
+    private final File _cwd;
+
+    /** The .gitlet directory where all persistence is stored. */
+    private final File _gitlet;
+
+    /** The branches and the active branch. */
+    private final Refs _refs;
+
+    /** The journal through which commits, refs and objects are written. */
+    private final Journal _journal;
 
     /** HashMap with keys as ID's and values as commits to access in O(N) time. */
-    private static HashMap<String, Commit> _commithistory;
+    private CommitIndex _commithistory;
 
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Writes history as a stream that FastImport reads back. Commits go out
+ * parents first, each with a mark, its time, its message, its parents
+ * and the files it changed from its first parent, given inline and
+ * copied from the object store in pieces; the stream ends by pointing
+ * each branch exported at its head. Commits reachable from those
+ * excluded are left out, and a commit whose parent is left out names
+ * it by ID, so that the stream extends a repository already holding
+ * them. No working tree is involved, and no blob is held in memory
+ * whole.
+ * @author Jake Clayton */
+class FastExport {
+
+    /** An export of REPO. */
+    FastExport(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+    }
+
+    /** Writes to OUT the history of BRANCHES, or of every branch if there
+     * are none, leaving out what any of EXCLUDED, branches or commit
+     * ID's, reaches. The caller must hold the writer lock, as blobs a
+     * partial clone lacks are fetched as they are needed. */
+    void write(List<String> branches, Collection<String> excluded, OutputStream out) {
+        TreeMap<String, String> heads = new TreeMap<>();
+        if (branches.isEmpty()) {
+            heads.putAll(_repo.refs().branches());
+        }
+        for (String branch : branches) {
+            String id = _repo.refs().get(branch);
+            if (id == null) {
+                throw new NotFoundException("A branch with that name does not exist.");
+            }
+            heads.put(branch, id);
+        }
+        ArrayList<String> have = new ArrayList<>();
+        for (String rev : excluded) {
+            String id = _repo.refs().get(rev);
+            have.add(_repo.tree().getCommit(id == null ? rev : id).get_hashCode());
+        }
+        Map<String, Commit> history = _repo.tree().getHistory();
+        List<Commit> commits = Pack.missingCommits(heads.values(), history, have,
+                                                   Bitmaps.load(_gitlet));
+        String branch = heads.isEmpty() ? "" : heads.firstKey();
+        try {
+            for (Commit c : commits) {
+                if (c.getParent() != null) {
+                    commit(c, branch, history, out);
+                }
+            }
+            for (Map.Entry<String, String> e : heads.entrySet()) {
+                line(out, "reset " + e.getKey());
+                line(out, "from " + ref(e.getValue()));
+                line(out, "");
+            }
+            line(out, "done");
+            out.flush();
+        } catch (IOException | IllegalStateException e) {
+            throw new GitletException("Could not export: " + e.getMessage(), e);
+        }
+    }
+
+    /** Writes COMMIT, one of HISTORY, to OUT as a commit on BRANCH. */
+    private void commit(Commit commit, String branch, Map<String, Commit> history,
+                        OutputStream out) throws IOException {
+        String mark = ":" + (_marks.size() + 1);
+        line(out, "commit " + branch);
+        line(out, "mark " + mark);
+        line(out, "time " + commit.getTime());
+        data(out, commit.getMessage().getBytes(StandardCharsets.UTF_8));
+        line(out, "from " + ref(commit.getParent()));
+        if (commit.getParent2() != null) {
+            line(out, "merge " + ref(commit.getParent2()));
+        }
+        Commit parent = history.get(commit.getParent());
+        Map<String, String> before = parent == null ? Map.of() : parent.contents();
+        TreeMap<String, String> changed = new TreeMap<>();
+        for (Map.Entry<String, String> e : commit.contents().entrySet()) {
+            if (!ObjectIds.same(e.getValue(), before.get(e.getKey()))) {
+                changed.put(e.getKey(), e.getValue());
+            }
+        }
+        _repo.promisor().ensure(changed);
+        for (Map.Entry<String, String> e : changed.entrySet()) {
+            line(out, "M inline " + e.getKey());
+            try (BlobStream in = new BlobStream(Utils.join(_gitlet, e.getValue()))) {
+                line(out, "data " + in.length());
+                in.transferTo(out);
+            }
+            line(out, "");
+        }
+        for (String name : new TreeMap<>(before).keySet()) {
+            if (!commit.containsFile(name)) {
+                line(out, "D " + name);
+            }
+        }
+        line(out, "");
+        _marks.put(commit.get_hashCode(), mark);
+    }
+
+    /** Returns how the stream names the commit ID: by its mark if it has
+     * been written, else by ID. */
+    private String ref(String id) {
+        return _marks.getOrDefault(id, id);
+    }
+
+    /** Writes the data block BYTES to OUT. */
+    private static void data(OutputStream out, byte[] bytes) throws IOException {
+        line(out, "data " + bytes.length);
+        out.write(bytes);
+        line(out, "");
+    }
+
+    /** Writes LINE and a newline to OUT. */
+    private static void line(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The repository exported. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+
+    /** The mark of each commit written, by ID. */
+    private final HashMap<String, String> _marks = new HashMap<>();
+}
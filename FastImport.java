@@ -0,0 +1,330 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Reads a stream of commits and branch updates and writes them straight
+ * to the object store, never touching the staging area or the working
+ * tree. Commits reach the history in batches, the journal is folded into
+ * the history snapshot once, and the branches are moved once, at the
+ * end, so the cost per commit is that of serializing it and its new
+ * blobs. The stream is made of commands separated by blank
+ * lines:
+ *
+ *     commit BRANCH
+ *     mark :N                     (optional)
+ *     time MILLIS                 (optional; the present by default)
+ *     data LENGTH
+ *     MESSAGE, LENGTH bytes
+ *     from COMMIT                 (optional)
+ *     merge COMMIT                (optional)
+ *     M inline NAME
+ *     data LENGTH
+ *     CONTENTS, LENGTH bytes
+ *     M BLOB NAME
+ *     D NAME
+ *
+ *     reset BRANCH
+ *     from COMMIT
+ *
+ *     done                        (optional)
+ *
+ * A COMMIT is a mark, a commit ID or a branch. A commit without "from"
+ * follows the last commit made on its branch in the stream, or the
+ * branch's head, or the initial commit on a new branch; it starts with
+ * that commit's files, which M and D lines then change. M names a blob
+ * given inline or already stored under that name. A commit's files all
+ * lie in one directory, so a NAME is a plain file name, with no "/",
+ * "\" or "..". A newline after each data block is optional. A commit's
+ * ID hashes its time, parents, files and message, so a commit the
+ * repository or the stream already holds is reused, not written again.
+ * An error ends the import without moving any branch; commits it has
+ * already written are left for gc.
+ * @author Jake Clayton */
+class FastImport {
+
+    /** Commits written to the history at a time. */
+    static final int BATCH = 1024;
+
+    /** An import into REPO. */
+    FastImport(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+        _history = repo.journal().loadHistory();
+    }
+
+    /** Imports the stream IN and reports what was imported. The caller
+     * must hold the writer lock. */
+    void run(InputStream in) {
+        _in = new BufferedInputStream(in, BUFFER);
+        try {
+            for (String line = line(); line != null; line = line()) {
+                if (line.isEmpty()) {
+                    continue;
+                } else if (line.startsWith("commit ")) {
+                    commit(line.substring(7));
+                } else if (line.startsWith("reset ")) {
+                    reset(line.substring(6));
+                } else if (line.equals("done")) {
+                    break;
+                } else {
+                    throw error("unknown command: " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new GitletException("Could not read the stream: " + e.getMessage(), e);
+        }
+        flush();
+        if (_commits > 0) {
+            _repo.journal().checkpoint();
+        }
+        for (Map.Entry<String, String> e : _heads.entrySet()) {
+            _repo.refs().set(e.getKey(), e.getValue());
+        }
+        _repo.out().println("Imported " + _commits + " commit(s) and " + _blobs
+            + " blob(s), updating " + _heads.size() + " branch(es).");
+    }
+
+    /** Reads the rest of a commit command on BRANCH. */
+    private void commit(String branch) throws IOException {
+        Refs.checkName(branch);
+        String line = line();
+        String mark = null;
+        if (line != null && line.startsWith("mark ")) {
+            mark = line.substring(5);
+            line = line();
+        }
+        long time = System.currentTimeMillis();
+        if (line != null && line.startsWith("time ")) {
+            try {
+                time = Long.parseLong(line.substring(5));
+            } catch (NumberFormatException e) {
+                throw error("bad time: " + line);
+            }
+            line = line();
+        }
+        String message = new String(data(line), StandardCharsets.UTF_8);
+        line = line();
+        String parent = null;
+        if (line != null && line.startsWith("from ")) {
+            parent = resolve(line.substring(5));
+            line = line();
+        } else {
+            parent = _heads.get(branch);
+            if (parent == null) {
+                parent = _repo.refs().get(branch);
+            }
+            if (parent == null) {
+                parent = new Commit().get_hashCode();
+            }
+        }
+        String parent2 = null;
+        if (line != null && line.startsWith("merge ")) {
+            parent2 = resolve(line.substring(6));
+            line = line();
+        }
+        HashMap<String, String> contents = new HashMap<>(lookup(parent).contents());
+        for (; line != null && !line.isEmpty(); line = line()) {
+            if (line.startsWith("M inline ")) {
+                String name = fileName(line.substring(9));
+                contents.put(name, blob(name, data(line())));
+            } else if (line.startsWith("M ")) {
+                int space = line.indexOf(' ', 2);
+                if (space < 0) {
+                    throw error("expected a blob and a name: " + line);
+                }
+                String id = line.substring(2, space);
+                String name = fileName(line.substring(space + 1));
+                if (!ObjectIds.BLOB.matcher(id).matches()) {
+                    throw error("not a blob ID: " + id);
+                } else if (Utils.join(_gitlet, id).isFile()
+                    ? !_repo.journal().readBlob(id).matches(id, name)
+                    : Promisor.remote(_gitlet) == null) {
+                    throw error("no blob " + id + " of " + name);
+                }
+                contents.put(name, id);
+            } else if (line.startsWith("D ")) {
+                contents.remove(line.substring(2));
+            } else {
+                throw error("unknown file command: " + line);
+            }
+        }
+        Commit commit = new Commit(message, contents, parent, parent2, time);
+        String id = commit.get_hashCode();
+        if (!_history.containsKey(id) && !_made.containsKey(id)) {
+            _made.put(id, commit);
+            _batch.add(commit);
+            if (_batch.size() >= BATCH) {
+                flush();
+            }
+            _commits += 1;
+        }
+        if (mark != null) {
+            _marks.put(mark, id);
+        }
+        _heads.put(branch, id);
+    }
+
+    /** Reads the rest of a reset command on BRANCH. */
+    private void reset(String branch) throws IOException {
+        Refs.checkName(branch);
+        String line = line();
+        if (line == null || !line.startsWith("from ")) {
+            throw error("reset " + branch + " needs a from line");
+        }
+        _heads.put(branch, resolve(line.substring(5)));
+    }
+
+    /** Returns NAME, which must be the name of a file in the flat
+     * directory a commit holds. */
+    private String fileName(String name) {
+        if (!Commit.isFileName(name)) {
+            throw error("bad file name: " + name);
+        }
+        return name;
+    }
+
+    /** Returns the ID of the commit REF, a mark, commit ID or branch. */
+    private String resolve(String ref) {
+        String id;
+        if (ref.startsWith(":")) {
+            id = _marks.get(ref);
+        } else if (_made.containsKey(ref) || _history.containsKey(ref)) {
+            id = ref;
+        } else {
+            id = _heads.get(ref);
+            if (id == null) {
+                id = _repo.refs().get(ref);
+            }
+        }
+        if (id == null) {
+            throw error("no such commit: " + ref);
+        }
+        return id;
+    }
+
+    /** Returns the commit ID, made in this stream or already stored. */
+    private Commit lookup(String id) {
+        Commit result = _made.get(id);
+        if (result == null) {
+            result = _history.get(id);
+        }
+        if (result == null) {
+            throw error("no such commit: " + id);
+        }
+        return result;
+    }
+
+    /** Stores CONTENTS as a blob of file NAME unless it is already
+     * stored, and returns its ID. */
+    private String blob(String name, byte[] contents) {
+        Blob blob = new Blob(name, contents);
+        File file = Utils.join(_gitlet, blob.get_hashCode());
+        if (!file.exists()) {
+            _repo.journal().write(file, Utils.serialize(blob));
+            _blobs += 1;
+        }
+        return blob.get_hashCode();
+    }
+
+    /** Appends the commits made since the last flush to the history,
+     * leaving the checkpoint to the end of the import. */
+    private void flush() {
+        _repo.journal().appendCommits(_batch);
+        _batch.clear();
+    }
+
+    /** Returns the bytes of the data block whose header is LINE. */
+    private byte[] data(String line) throws IOException {
+        if (line == null || !line.startsWith("data ")) {
+            throw error("expected data, not " + line);
+        }
+        int length;
+        try {
+            length = Integer.parseInt(line.substring(5));
+        } catch (NumberFormatException e) {
+            throw error("bad length: " + line);
+        }
+        if (length < 0) {
+            throw error("bad length: " + line);
+        }
+        byte[] result = _in.readNBytes(length);
+        if (result.length != length) {
+            throw error("stream ends inside data");
+        }
+        _in.mark(1);
+        if (_in.read() != '\n') {
+            _in.reset();
+        }
+        _line += 1;
+        return result;
+    }
+
+    /** Returns the next line of the stream without its newline, or null
+     * at its end. */
+    private String line() throws IOException {
+        _buffer.reset();
+        int c = _in.read();
+        if (c < 0) {
+            return null;
+        }
+        for (; c >= 0 && c != '\n'; c = _in.read()) {
+            _buffer.write(c);
+        }
+        _line += 1;
+        return _buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the error MESSAGE at the current line. */
+    private GitletException error(String message) {
+        return new GitletException("fast-import, line " + _line + ": " + message);
+    }
+
+    /** Bytes read from the stream at a time. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The repository imported into. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+
+    /** Its commits before the import, by ID. */
+    private final CommitIndex _history;
+
+    /** The commits made from the stream, by ID. */
+    private final CommitIndex _made = new CommitIndex();
+
+    /** Those not yet written to the history. */
+    private final List<Commit> _batch = new ArrayList<>();
+
+    /** The ID of the commit of each mark. */
+    private final HashMap<String, String> _marks = new HashMap<>();
+
+    /** The new head of each branch the stream moves, in order. */
+    private final LinkedHashMap<String, String> _heads = new LinkedHashMap<>();
+
+    /** The stream. */
+    private BufferedInputStream _in;
+
+    /** The current line read. */
+    private final ByteArrayOutputStream _buffer = new ByteArrayOutputStream();
+
+    /** Number of the line last read. */
+    private int _line;
+
+    /** Number of commits imported. */
+    private int _commits;
+
+    /** Number of new blobs stored. */
+    private int _blobs;
+}
@@ -0,0 +1,280 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** The receiving end of a fetch. Blobs are checked against their ID,
+ * written to a temporary file of this fetch's own, fsynced, and only then
+ * renamed into place, so the object store never holds a partial blob.
+ * Once a commit and every blob it needs have landed, the commit is
+ * appended to a checkpoint file; if the fetch is interrupted, the next
+ * fetch of the same branch offers those commits as already held and only
+ * transfers what is still missing. The renames are made durable by one
+ * fsync of the object store when the fetch finishes, so a resumed fetch
+ * drops the checkpointed commits from the first whose blobs a crash lost.
+ * @author Jake Clayton */
+class FetchCheckpoint {
+
+    /** Resumes or starts a fetch of BRANCH from REMOTE into the .gitlet
+     * directory GITLET, of commits only unless BLOBS. */
+    FetchCheckpoint(File gitlet, String remote, String branch, boolean blobs) {
+        _objects = gitlet;
+        _blobs = blobs;
+        String name = (remote + "@" + branch).replaceAll("[^A-Za-z0-9._@-]", "_");
+        _tmp = Utils.join(gitlet, "tmp", name);
+        _tmp.mkdirs();
+        for (File stale : _tmp.listFiles()) {
+            stale.delete();
+        }
+        File dir = Utils.join(gitlet, "checkpoints");
+        dir.mkdir();
+        _file = Utils.join(dir, name);
+        load();
+    }
+
+    /** Returns the commits recorded by every unfinished fetch into the
+     * .gitlet directory GITLET. Their objects are in the object store
+     * but nothing refers to them yet. */
+    static List<Commit> pending(File gitlet) {
+        ArrayList<Commit> result = new ArrayList<>();
+        File[] files = Utils.join(gitlet, "checkpoints").listFiles();
+        if (files != null) {
+            for (File f : files) {
+                read(f, result, new ArrayList<>());
+            }
+        }
+        return result;
+    }
+
+    /** Returns whether blobs are to be fetched along with commits. */
+    boolean wantsBlobs() {
+        return _blobs;
+    }
+
+    /** Returns the ID's of the commits whose objects have all landed. */
+    synchronized Set<String> commitIds() {
+        HashSet<String> result = new HashSet<>();
+        for (Commit c : _completed) {
+            result.add(c.get_hashCode());
+        }
+        return result;
+    }
+
+    /** Registers commit C, which must come after all of its parents that
+     * are being fetched. Returns the ID's of the blobs C needs that are
+     * neither stored nor already expected by an earlier commit, which is
+     * none of them if blobs are not wanted. */
+    synchronized List<String> expect(Commit c) {
+        if (!c.isWellFormed()) {
+            throw new RejectedException("Received corrupt commit " + c.get_hashCode() + ".");
+        }
+        ArrayList<String> fresh = new ArrayList<>();
+        HashSet<String> pending = new HashSet<>();
+        for (Map.Entry<String, String> e : c.contents().entrySet()) {
+            String id = e.getValue();
+            if (!_blobs || _owner.containsKey(id) || Utils.join(_objects, id).exists()) {
+                continue;
+            }
+            _names.put(id, e.getKey());
+            _owner.put(id, c);
+            pending.add(id);
+            fresh.add(id);
+        }
+        _queue.put(c, pending);
+        advance();
+        return fresh;
+    }
+
+    /** Checks that STORED, the serialized form of a blob, hashes to ID and
+     * then atomically publishes it to the object store, fsynced, though
+     * its name is durable only once finish() returns. May be called from
+     * several threads at once. */
+    void store(String id, byte[] stored) {
+        String name;
+        synchronized (this) {
+            name = _names.get(id);
+        }
+        File dest = Utils.join(_objects, id);
+        if (name == null) {
+            if (dest.exists()) {
+                return;
+            }
+            throw new IllegalArgumentException("object was not expected");
+        }
+        Blob blob = Protocol.blob(stored);
+        if (blob == null || !blob.matches(id, name)) {
+            throw new IllegalArgumentException("contents do not match id");
+        }
+        try {
+            File tmp = File.createTempFile(id, ".tmp", _tmp);
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(stored);
+                out.getFD().sync();
+            }
+            Trace.io("write", tmp.getPath(), stored.length, 0);
+            Trace.count(Trace.FSYNCS, 1);
+            Files.move(tmp.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        landed(id);
+    }
+
+    /** Returns every commit whose objects have all landed, parents before
+     * children, once the blobs stored are durable, reporting an error if
+     * any expected blob never arrived. */
+    synchronized List<Commit> finish() {
+        if (!_queue.isEmpty()) {
+            int missing = 0;
+            for (Set<String> pending : _queue.values()) {
+                missing += pending.size();
+            }
+            throw new GitletException("Fetch incomplete: " + missing + " object(s) never arrived.");
+        }
+        try {
+            Journal.force(_objects.toPath());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return new ArrayList<>(_completed);
+    }
+
+    /** Removes the checkpoint once the fetched commits are recorded. */
+    void delete() {
+        _file.delete();
+        _tmp.delete();
+    }
+
+    /** Marks the blob with the given ID as stored. */
+    private synchronized void landed(String id) {
+        Commit c = _owner.remove(id);
+        if (c != null) {
+            _queue.get(c).remove(id);
+        }
+        advance();
+    }
+
+    /** Moves every leading commit in _queue with nothing pending into the
+     * checkpoint. */
+    private void advance() {
+        while (!_queue.isEmpty()) {
+            Map.Entry<Commit, Set<String>> first = _queue.entrySet().iterator().next();
+            if (!first.getValue().isEmpty()) {
+                return;
+            }
+            _queue.remove(first.getKey());
+            append(first.getKey());
+        }
+    }
+
+    /** Appends C to the checkpoint file. */
+    private void append(Commit c) {
+        byte[] record = Utils.serialize(c);
+        try (DataOutputStream out =
+                 new DataOutputStream(new FileOutputStream(_file, true))) {
+            out.writeInt(record.length);
+            out.write(record);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _completed.add(c);
+    }
+
+    /** Reads the commits recorded by an earlier, interrupted fetch,
+     * cutting off any record that was only partly written and every
+     * record from the first commit with a blob that was lost. */
+    private void load() {
+        if (!_file.exists()) {
+            return;
+        }
+        ArrayList<Long> ends = new ArrayList<>();
+        long valid = read(_file, _completed, ends);
+        for (int i = 0; i < _completed.size(); i += 1) {
+            if (!landed(_completed.get(i))) {
+                valid = i == 0 ? 0 : ends.get(i - 1);
+                _completed.subList(i, _completed.size()).clear();
+                break;
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(_file, "rw")) {
+            raf.setLength(valid);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Returns whether every blob C needs is stored, or blobs are not
+     * wanted. */
+    private boolean landed(Commit c) {
+        if (_blobs) {
+            for (String id : c.contents().values()) {
+                if (!Utils.join(_objects, id).exists()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Adds the intact commits in the checkpoint FILE to INTO, and where
+     * the record of each ends to ENDS, and returns the length of the
+     * intact part of FILE. */
+    private static long read(File file, List<Commit> into, List<Long> ends) {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            while (true) {
+                int len = in.readInt();
+                byte[] record = new byte[len];
+                in.readFully(record);
+                into.add(Utils.deserialize(record, Commit.class));
+                valid += 4 + len;
+                ends.add(valid);
+            }
+        } catch (EOFException | IllegalArgumentException e) {
+            /* A torn final record; everything before it is intact. */
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return valid;
+    }
+
+    /** The object store being fetched into. */
+    private final File _objects;
+
+    /** Whether blobs are fetched along with commits. */
+    private final boolean _blobs;
+
+    /** Where this fetch writes blobs before it publishes them. */
+    private final File _tmp;
+
+    /** The checkpoint file for this remote and branch. */
+    private final File _file;
+
+    /** Commits whose objects have all landed, in checkpoint order. */
+    private final List<Commit> _completed = new ArrayList<>();
+
+    /** Commits still waiting on blobs, in the order they were expected,
+     * each with the ID's of the blobs it is still waiting on. */
+    private final LinkedHashMap<Commit, Set<String>> _queue = new LinkedHashMap<>();
+
+    /** The commit each outstanding blob was first expected by. */
+    private final HashMap<String, Commit> _owner = new HashMap<>();
+
+    /** The file name each expected blob was stored under. */
+    private final HashMap<String, String> _names = new HashMap<>();
+}
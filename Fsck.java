@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/** Checks the integrity of a repository. Every commit must still match
+ * its ID, every blob file must hold contents that hash to its name, and
+ * every branch, parent and file of a commit must refer to an object that
+ * is present, save the parents cut off at a shallow boundary and the
+ * blobs a partial clone's promisor will supply. Blobs are checked in
+ * parallel, one per core, and hashed as they are read, so no blob is
+ * ever held in memory whole. Each problem is reported as one line,
+ * "corrupt", "missing" or "dangling" followed by the kind of object, its
+ * ID, and any detail, so the output can be read by a program.
+ * @author Jake Clayton */
+class Fsck {
+
+    /** A checker for REPO. */
+    Fsck(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+    }
+
+    /** Returns the problems found, sorted. */
+    List<String> check() {
+        ConcurrentLinkedQueue<String> problems = new ConcurrentLinkedQueue<>();
+        CommitIndex history = _repo.journal().loadHistory();
+        Set<String> shallow = Shallow.load(_gitlet);
+        boolean promised = Promisor.remote(_gitlet) != null;
+
+        IdSet reachable = new IdSet();
+        ArrayList<String> frontier = new ArrayList<>();
+        for (Map.Entry<String, String> ref : _repo.refs().branches().entrySet()) {
+            if (!history.containsKey(ref.getValue())) {
+                problems.add("missing commit " + ref.getValue() + " branch " + ref.getKey());
+            } else {
+                frontier.add(ref.getValue());
+            }
+        }
+        while (!frontier.isEmpty()) {
+            String id = frontier.remove(frontier.size() - 1);
+            if (!reachable.add(id)) {
+                continue;
+            }
+            Commit c = history.get(id);
+            for (String parent : new String[] {c.getParent(), c.getParent2()}) {
+                if (parent == null || shallow.contains(id)) {
+                    continue;
+                } else if (history.containsKey(parent)) {
+                    frontier.add(parent);
+                } else {
+                    problems.add("missing commit " + parent + " parent of " + id);
+                }
+            }
+        }
+
+        HashMap<String, String> names = new HashMap<>();
+        for (Commit c : history.values()) {
+            if (!c.isIntact()) {
+                problems.add("corrupt commit " + c.get_hashCode());
+            }
+            if (!reachable.contains(c.get_hashCode())) {
+                problems.add("dangling commit " + c.get_hashCode());
+            }
+            for (Map.Entry<String, String> e : c.contents().entrySet()) {
+                names.putIfAbsent(e.getValue(), e.getKey());
+                if (reachable.contains(c.get_hashCode()) && !promised
+                    && !Utils.join(_gitlet, e.getValue()).isFile()) {
+                    problems.add("missing blob " + e.getValue() + " " + e.getKey()
+                        + " in " + c.get_hashCode());
+                }
+            }
+        }
+
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<?>> checks = new ArrayList<>();
+            for (String file : _gitlet.list()) {
+                if (!ObjectIds.BLOB.matcher(file).matches()) {
+                    continue;
+                }
+                String name = names.get(file);
+                if (name == null) {
+                    problems.add("dangling blob " + file);
+                }
+                checks.add(pool.submit(() -> {
+                    String problem = verify(Utils.join(_gitlet, file), file, name);
+                    if (problem != null) {
+                        problems.add("corrupt blob " + file + " " + problem);
+                    }
+                }));
+            }
+            for (Future<?> f : checks) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitletException("Interrupted while checking objects.", e);
+        } catch (ExecutionException e) {
+            throw new GitletException("Could not check objects: " + e.getCause(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ArrayList<String> result = new ArrayList<>(problems);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns what is wrong with the blob FILE, which should be the blob
+     * ID stored under file NAME, or null if nothing is. NAME is null for
+     * a blob no commit refers to, whose contents cannot then be hashed;
+     * only its form and recorded ID are checked. */
+    static String verify(File file, String id, String name) {
+        MessageDigest md = Hashing.sha1();
+        String recorded;
+        try {
+            recorded = stream(file, md);
+        } catch (EOFException e) {
+            return "truncated";
+        } catch (IOException | IllegalStateException e) {
+            return "unreadable (" + e.getMessage() + ")";
+        }
+        if (!id.equals(recorded)) {
+            return "records ID " + recorded;
+        }
+        if (name != null) {
+            Hashing.update(md, name);
+            String hashed = "b" + Hashing.hex(md, id.length() - 1);
+            if (!hashed.equals(id)) {
+                return "contents hash to " + hashed;
+            }
+        }
+        return null;
+    }
+
+    /** Reads the serialized Blob in FILE, feeding its contents to MD in
+     * pieces as they are read, and returns the ID it records. */
+    private static String stream(File file, MessageDigest md) throws IOException {
+        try (BlobStream in = new BlobStream(file)) {
+            byte[] buffer = new byte[BUFFER];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                md.update(buffer, 0, n);
+            }
+            return in.id();
+        }
+    }
+
+    /** Bytes read from a blob file at a time. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The repository being checked. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+}
@@ -0,0 +1,89 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+
+/** Removes the commits and blobs that no branch can reach. What the
+ * branches reach is found as the OR of their reachability bitmaps, the
+ * walk from each head stopping wherever Bitmaps already has the answer.
+ * The history is rewritten without the unreached commits by a journal
+ * checkpoint, which readers see happen atomically, and only then are
+ * unreached blob files deleted, through the journal. Last, the bitmaps
+ * are rebuilt over the objects that remain. Objects younger than the
+ * grace period are kept whether reachable or not, as are those of
+ * unfinished fetches, so that a push or fetch in progress is never
+ * robbed of its objects.
+ * @author Jake Clayton */
+class GarbageCollector {
+
+    /** The grace period, in seconds, when none is given. */
+    static final long DEFAULT_GRACE = 3600;
+
+    /** A collector for REPO. */
+    GarbageCollector(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+    }
+
+    /** Removes unreachable objects older than GRACESECONDS and reports
+     * what was removed. The caller must hold the writer lock. */
+    void collect(long graceSeconds) {
+        long cutoff = System.currentTimeMillis() - graceSeconds * 1000;
+        CommitIndex history = _repo.journal().loadHistory();
+        Collection<String> heads = _repo.refs().branches().values();
+        ArrayList<String> roots = new ArrayList<>(heads);
+        for (Commit c : history.values()) {
+            if (c.getTime() > cutoff) {
+                roots.add(c.get_hashCode());
+            }
+        }
+        Bitmaps bitmaps = Bitmaps.load(_gitlet);
+        BitSet live = bitmaps.reach(roots, history);
+        for (Commit c : FetchCheckpoint.pending(_gitlet)) {
+            for (String blob : c.contents().values()) {
+                live.set(bitmaps.position(blob));
+            }
+        }
+
+        HashSet<String> deadCommits = new HashSet<>();
+        for (String id : history.keySet()) {
+            if (!bitmaps.contains(live, id)) {
+                deadCommits.add(id);
+            }
+        }
+        if (!deadCommits.isEmpty()) {
+            _repo.journal().checkpoint(deadCommits);
+            Blame.forget(_gitlet, deadCommits, _repo.journal());
+            for (String id : deadCommits) {
+                history.remove(id);
+            }
+        }
+        int deadBlobs = 0;
+        long freed = 0;
+        for (String name : _gitlet.list()) {
+            if (!ObjectIds.BLOB.matcher(name).matches() || bitmaps.contains(live, name)) {
+                continue;
+            }
+            File f = Utils.join(_gitlet, name);
+            if (f.lastModified() > cutoff) {
+                continue;
+            }
+            long size = f.length();
+            _repo.journal().delete(f);
+            deadBlobs += 1;
+            freed += size;
+        }
+        Bitmaps.build(_gitlet, history, heads, _repo.journal());
+        _repo.out().println("Removed " + deadCommits.size() + " commit(s) and "
+            + deadBlobs + " blob(s), freeing " + freed + " bytes.");
+    }
+
+    /** The repository being collected. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+}
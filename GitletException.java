@@ -0,0 +1,26 @@
+package gitlet;
+
+/** General exception indicating a Gitlet error.  For fatal errors, the
+ *  result of .getMessage() is the error message to be printed.
+ *  @author P. N. Hilfinger
+ */
+public class GitletException extends RuntimeException {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** A GitletException with no message. */
+    public GitletException() {
+        super();
+    }
+
+    /** A GitletException MSG as its message. */
+    public GitletException(String msg) {
+        super(msg);
+    }
+
+    /** A GitletException with MSG as its message, caused by CAUSE. */
+    public GitletException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
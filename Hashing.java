@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Hashing of object contents. Digests are made once per thread and
+ * reused, files are fed to them straight from their channels, mapped
+ * into memory when large, and hashes are encoded through a table rather
+ * than formatted a byte at a time. Object ID's are SHA-1.
+ * @author Jake Clayton */
+class Hashing {
+
+    /** The algorithm of object ID's. */
+    static final String SHA1 = "SHA-1";
+
+    /** Returns this thread's SHA-1 digest, reset and ready for input. It
+     * must be finished before the next call on the same thread. */
+    static MessageDigest sha1() {
+        MessageDigest md = SHA1_DIGESTS.get();
+        md.reset();
+        return md;
+    }
+
+    /** Feeds MD the value of VAL, a byte array or a String, which is
+     * taken as UTF-8. */
+    static void update(MessageDigest md, Object val) {
+        if (val instanceof byte[]) {
+            md.update((byte[]) val);
+        } else if (val instanceof String) {
+            md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new IllegalArgumentException("improper type to sha1");
+        }
+    }
+
+    /** Feeds MD the remaining bytes of BUFFER, leaving it at its limit.
+     * A direct or mapped buffer is hashed where it lies, without a copy
+     * onto the heap. */
+    static void update(MessageDigest md, ByteBuffer buffer) {
+        md.update(buffer);
+    }
+
+    /** Feeds MD the contents of FILE, mapping it into memory if it is
+     * at least MAP_THRESHOLD bytes long and reading it through this
+     * thread's buffer otherwise. */
+    static void update(MessageDigest md, File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long at = 0; at < size; at += MAP_CHUNK) {
+                    update(md, channel.map(FileChannel.MapMode.READ_ONLY, at,
+                                           Math.min(MAP_CHUNK, size - at)));
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    update(md, buffer);
+                    buffer.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Returns the first CHARS hex digits of the hash MD has computed,
+     * which resets it. */
+    static String hex(MessageDigest md, int chars) {
+        return hex(md.digest(), chars);
+    }
+
+    /** Returns the first CHARS lower-case hex digits of BYTES. */
+    static String hex(byte[] bytes, int chars) {
+        byte[] result = new byte[chars];
+        for (int i = 0; i < chars; i += 1) {
+            int b = bytes[i >> 1];
+            result[i] = HEX[(i & 1) == 0 ? (b >> 4) & 0xf : b & 0xf];
+        }
+        return new String(result, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Returns a new digest for ALGORITHM. */
+    private static MessageDigest create(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("System does not support " + algorithm);
+        }
+    }
+
+    /** Files at least this long are mapped rather than read. */
+    static final long MAP_THRESHOLD = 1 << 20;
+
+    /** Bytes mapped at a time. */
+    private static final long MAP_CHUNK = 1 << 28;
+
+    /** Bytes read from a smaller file at a time. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The lower-case hex digits, by value. */
+    private static final byte[] HEX =
+        "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    /** Each thread's SHA-1 digest. */
+    private static final ThreadLocal<MessageDigest> SHA1_DIGESTS =
+        ThreadLocal.withInitial(() -> create(SHA1));
+
+    /** Each thread's read buffer. */
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER));
+}
@@ -0,0 +1,82 @@
+package gitlet;
+
+/** A map from object ID's to non-negative ints, the ID's kept packed by
+ * ObjectIds in an open-addressing table of longs with linear probing and
+ * the values in a parallel array of ints. It stands in for a HashMap of
+ * String ID's to Integers, with no allocation per entry.
+ * @author Jake Clayton */
+class IdIndex {
+
+    /** An empty index. */
+    IdIndex() {
+        _bits = 4;
+        _keys = new long[ObjectIds.WORDS << _bits];
+        _values = new int[1 << _bits];
+    }
+
+    /** Returns the value of ID, or -1 if it has none. */
+    int get(String id) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (!ObjectIds.pack(id, key, 0)) {
+            return -1;
+        }
+        int i = ObjectIds.find(_keys, _bits, key, 0);
+        return _keys[ObjectIds.WORDS * i + 2] != 0 ? _values[i] : -1;
+    }
+
+    /** Makes VALUE, which must not be negative, the value of ID. */
+    void put(String id, int value) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (!ObjectIds.pack(id, key, 0)) {
+            throw new IllegalArgumentException("not an object ID: " + id);
+        }
+        put(key, 0, value);
+    }
+
+    /** Returns the number of ID's with values. */
+    int size() {
+        return _size;
+    }
+
+    /** Makes VALUE the value of the ID packed in KEYS at AT. */
+    private void put(long[] keys, int at, int value) {
+        int i = ObjectIds.find(_keys, _bits, keys, at);
+        _values[i] = value;
+        if (_keys[ObjectIds.WORDS * i + 2] != 0) {
+            return;
+        }
+        System.arraycopy(keys, at, _keys, ObjectIds.WORDS * i, ObjectIds.WORDS);
+        _size += 1;
+        if (2 * _size > _values.length) {
+            grow();
+        }
+    }
+
+    /** Doubles the table. */
+    private void grow() {
+        long[] oldKeys = _keys;
+        int[] oldValues = _values;
+        _bits += 1;
+        _keys = new long[ObjectIds.WORDS << _bits];
+        _values = new int[1 << _bits];
+        _size = 0;
+        for (int i = 0; i < oldValues.length; i += 1) {
+            if (oldKeys[ObjectIds.WORDS * i + 2] != 0) {
+                put(oldKeys, ObjectIds.WORDS * i, oldValues[i]);
+            }
+        }
+    }
+
+    /** Log base 2 of the table size. */
+    private int _bits;
+
+    /** The packed ID's, ObjectIds.WORDS longs per slot, a third word of 0
+     * marking an empty slot. */
+    private long[] _keys;
+
+    /** The value of the ID in the same slot of _keys. */
+    private int[] _values;
+
+    /** Number of ID's with values. */
+    private int _size;
+}
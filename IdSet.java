@@ -0,0 +1,74 @@
+package gitlet;
+
+/** A set of object ID's, kept packed by ObjectIds in one open-addressing
+ * table of longs with linear probing. It stands in for a HashSet of
+ * String ID's in walks over the whole history, where it needs a fraction
+ * of the memory and no allocation per entry.
+ * @author Jake Clayton */
+class IdSet {
+
+    /** An empty set. */
+    IdSet() {
+        _bits = 4;
+        _keys = new long[ObjectIds.WORDS << _bits];
+    }
+
+    /** Adds ID, returning whether it was not already present. */
+    boolean add(String id) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (!ObjectIds.pack(id, key, 0)) {
+            throw new IllegalArgumentException("not an object ID: " + id);
+        }
+        return add(key, 0);
+    }
+
+    /** Returns whether ID is present. */
+    boolean contains(String id) {
+        long[] key = new long[ObjectIds.WORDS];
+        return ObjectIds.pack(id, key, 0)
+            && _keys[ObjectIds.WORDS * ObjectIds.find(_keys, _bits, key, 0) + 2] != 0;
+    }
+
+    /** Returns the number of ID's present. */
+    int size() {
+        return _size;
+    }
+
+    /** Adds the ID packed in KEYS at AT, returning whether it was not
+     * already present. */
+    private boolean add(long[] keys, int at) {
+        int slot = ObjectIds.WORDS * ObjectIds.find(_keys, _bits, keys, at);
+        if (_keys[slot + 2] != 0) {
+            return false;
+        }
+        System.arraycopy(keys, at, _keys, slot, ObjectIds.WORDS);
+        _size += 1;
+        if (2 * _size > _keys.length / ObjectIds.WORDS) {
+            grow();
+        }
+        return true;
+    }
+
+    /** Doubles the table. */
+    private void grow() {
+        long[] old = _keys;
+        _bits += 1;
+        _keys = new long[ObjectIds.WORDS << _bits];
+        _size = 0;
+        for (int at = 0; at < old.length; at += ObjectIds.WORDS) {
+            if (old[at + 2] != 0) {
+                add(old, at);
+            }
+        }
+    }
+
+    /** Log base 2 of the number of slots. */
+    private int _bits;
+
+    /** The table, ObjectIds.WORDS longs per slot, a third word of 0
+     * marking an empty slot. */
+    private long[] _keys;
+
+    /** Number of ID's present. */
+    private int _size;
+}
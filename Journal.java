@@ -0,0 +1,740 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/** The append-only redo journal of a .gitlet directory. New commits, ref
+ * changes and small objects are appended to it as checksummed records;
+ * refs and objects are also written to their usual files straight away,
+ * while commits live only in the journal until the next checkpoint folds
+ * them into the commit_history snapshot. Objects are not fsynced as they
+ * are written. Instead sync() makes everything appended so far durable
+ * with a single fsync of the journal, shared by every writer waiting on it
+ * at the time; a ref is replaced only after the sync that covers its
+ * record. recover() discards a torn final record and rewrites any ref or
+ * object file that a crash left behind the journal. Each Journal keeps an
+ * index of the records it has read, with where their payloads lie, so a
+ * read only reads what has been appended since the last one, and a
+ * payload is read only when it is wanted.
+ * @author Jake Clayton */
+class Journal {
+
+    /** Environment variable setting the journal size, in bytes, beyond
+     * which it is folded into the snapshot. */
+    static final String LIMIT_VARIABLE = "GITLET_JOURNAL_LIMIT";
+
+    /** Environment variable setting how long, in microseconds, the thread
+     * leading a group commit waits for others to join it. */
+    static final String WINDOW_VARIABLE = "GITLET_GROUP_COMMIT_MICROS";
+
+    /** Objects larger than this are fsynced in place rather than being
+     * copied into the journal. */
+    static final int INLINE_LIMIT = 1 << 20;
+
+    /** Record holding a serialized commit; the key is its ID. */
+    private static final byte COMMIT = 1;
+    /** Record holding the new contents of a file; the key is its path. */
+    private static final byte WRITE = 2;
+    /** Record of a deleted file; the key is its path. */
+    private static final byte DELETE = 3;
+
+    /** Length of a record header: payload length and checksum. */
+    private static final int HEADER = 8;
+
+    /** Returns the journal of the .gitlet directory GITLET. */
+    static Journal of(File gitlet) {
+        String key;
+        try {
+            key = gitlet.getCanonicalPath();
+        } catch (IOException e) {
+            key = gitlet.getAbsolutePath();
+        }
+        return JOURNALS.computeIfAbsent(key, k -> new Journal(new File(k)));
+    }
+
+    /** The journal of GITLET. */
+    private Journal(File gitlet) {
+        _gitlet = gitlet;
+        _file = Utils.join(gitlet, "journal");
+        _snapshot = Utils.join(gitlet, "commit_history");
+        _limit = longSetting(LIMIT_VARIABLE, 4L << 20);
+        _windowMicros = longSetting(WINDOW_VARIABLE, 0);
+        _prefix = gitlet.getPath() + File.separator;
+    }
+
+    /** Closes the journal's files and drops it, and with it the objects
+     * it has cached, so that the next call to of() starts afresh. The
+     * caller must make sure nothing is still using it. */
+    synchronized void close() {
+        JOURNALS.remove(_gitlet.getPath(), this);
+        try {
+            if (_channel != null) {
+                _channel.close();
+            }
+            if (_reader != null) {
+                _reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot close journal: " + e.getMessage());
+        } finally {
+            _channel = null;
+            _reader = null;
+            reset();
+            OBJECTS.drop(_prefix);
+        }
+    }
+
+    /** Returns every commit: the snapshot plus those in the journal.
+     * Safe to call without the writer lock; if a checkpoint replaces the
+     * snapshot while it is being read, the read is retried. The decoded
+     * snapshot and commits are cached, so the returned map is a fresh
+     * copy the caller may change. */
+    CommitIndex loadHistory() {
+        while (true) {
+            Object before = identity(_snapshot);
+            CommitIndex history = recent(before, new CommitIndex(snapshot(before)));
+            Object after = identity(_snapshot);
+            if (before == null ? after == null : before.equals(after)) {
+                return history;
+            }
+        }
+    }
+
+    /** Returns the commits through a TimeIndex, which decodes from the
+     * snapshot only the commits asked of it, or null if the snapshot was
+     * written before it had an index. Safe to call without the writer
+     * lock, and retried as loadHistory() is; it writes nothing. */
+    TimeIndex timeIndex() {
+        while (true) {
+            Object before = identity(_snapshot);
+            TimeIndex index = TimeIndex.open(before == null ? null : _snapshot,
+                                             recent(before, new CommitIndex()));
+            Object after = identity(_snapshot);
+            if (before == null ? after == null : before.equals(after)) {
+                return index;
+            }
+        }
+    }
+
+    /** Adds the commits in the journal to HISTORY, the snapshot last seen
+     * with IDENTITY having been read into it, and returns it. */
+    private CommitIndex recent(Object identity, CommitIndex history) {
+        for (Record r : records(identity)) {
+            if (r.type == COMMIT) {
+                Commit c = OBJECTS.get(_prefix + r.key, Commit.class);
+                if (c == null) {
+                    c = Utils.deserialize(payload(r), Commit.class);
+                    Trace.count(Trace.OBJECTS_READ, 1);
+                    OBJECTS.put(_prefix + r.key, c, r.length);
+                }
+                history.put(c.get_hashCode(), c);
+            }
+        }
+        return history;
+    }
+
+    /** Returns the decoded snapshot, last seen with IDENTITY, from the
+     * cache if it has not been replaced since it was cached. */
+    private CommitIndex snapshot(Object identity) {
+        if (identity == null) {
+            return new CommitIndex();
+        }
+        String key = _prefix + _snapshot.getName() + "@" + identity + "@"
+            + _snapshot.lastModified() + "@" + _snapshot.length();
+        CommitIndex history = OBJECTS.get(key, CommitIndex.class);
+        if (history == null) {
+            history = TimeIndex.load(_snapshot);
+            OBJECTS.put(key, history, 2 * _snapshot.length());
+        }
+        return history;
+    }
+
+    /** Returns the blob with ID, reading it from the .gitlet directory
+     * only if it is not already cached. */
+    Blob readBlob(String id) {
+        Blob b = OBJECTS.get(_prefix + id, Blob.class);
+        if (b == null) {
+            File file = Utils.join(_gitlet, id);
+            b = Utils.readObject(file, Blob.class);
+            OBJECTS.put(_prefix + id, b, 2 * file.length());
+        }
+        return b;
+    }
+
+    /** Returns the cache of decoded objects, which every journal of
+     * this process shares. */
+    static ObjectCache objects() {
+        return OBJECTS;
+    }
+
+    /** Appends COMMITS to the history. The caller must hold the writer
+     * lock. */
+    void addCommits(Collection<Commit> commits) {
+        if (commits.isEmpty()) {
+            return;
+        }
+        appendCommits(commits);
+        if (_file.length() > _limit) {
+            checkpoint();
+        }
+    }
+
+    /** Appends COMMITS to the history however long the journal grows,
+     * for a bulk writer that checkpoints once when it is done. The caller
+     * must hold the writer lock. */
+    void appendCommits(Collection<Commit> commits) {
+        for (Commit c : commits) {
+            append(COMMIT, c.get_hashCode(), Utils.serialize(c));
+        }
+    }
+
+    /** Replaces the contents of FILE, inside the .gitlet directory, with
+     * DATA and records the write. A file such as a ref, which names other
+     * records, is replaced only once its record is on disk, so a crash
+     * cannot leave it naming a commit the journal has lost. A file named
+     * by what it holds, an object or what is kept about one, is replaced
+     * first and its record synced with the next group commit, as a crash
+     * that loses the record leaves nothing naming the file. The caller
+     * must hold the writer lock. */
+    void write(File file, byte[] data) {
+        if (data.length > INLINE_LIMIT || isObject(file)) {
+            Utils.writeAtomically(file, data);
+            log(file, data);
+        } else {
+            append(WRITE, relative(file), data);
+            sync();
+            Utils.writeAtomically(file, data);
+        }
+    }
+
+    /** Records that FILE, inside the .gitlet directory, has just been
+     * given the contents DATA by some other means. */
+    void log(File file, byte[] data) {
+        if (data.length <= INLINE_LIMIT) {
+            append(WRITE, relative(file), data);
+        } else {
+            synchronized (this) {
+                _unsynced.add(file);
+            }
+        }
+    }
+
+    /** Deletes FILE, inside the .gitlet directory, and records the
+     * deletion, which like a write reaches disk before the file is gone
+     * unless FILE is named by what it holds. The caller must hold the
+     * writer lock. */
+    void delete(File file) {
+        append(DELETE, relative(file), new byte[0]);
+        if (!isObject(file)) {
+            sync();
+        }
+        file.delete();
+    }
+
+    /** Blocks until everything appended so far by this process is on disk.
+     * If another thread is already syncing, waits for it and only syncs
+     * again if that did not cover this thread's records. A sync that
+     * began before the journal was cut back vouches for nothing after. */
+    void sync() {
+        Trace.run("journal.sync", () -> {
+            long target;
+            long generation;
+            synchronized (this) {
+                target = _appended;
+                while (_durable < target && _syncing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (_durable >= target) {
+                    return;
+                }
+                _syncing = true;
+                generation = _generation;
+            }
+            long upto = target;
+            try {
+                if (_windowMicros > 0) {
+                    Thread.sleep(_windowMicros / 1000, (int) (_windowMicros % 1000) * 1000);
+                }
+                List<File> large;
+                synchronized (this) {
+                    upto = _appended;
+                    large = new ArrayList<>(_unsynced);
+                    _unsynced.clear();
+                }
+                for (File f : large) {
+                    force(f.toPath());
+                }
+                if (_channel != null) {
+                    _channel.force(false);
+                    Trace.count(Trace.FSYNCS, 1);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("cannot sync journal: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this) {
+                    if (_generation == generation) {
+                        _durable = Math.max(_durable, upto);
+                    }
+                    _syncing = false;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    /** Repairs the damage a crash may have done: cuts off a partly written
+     * final record, and rewrites ref and object files whose contents do
+     * not match the last record for them. Checks without the writer lock
+     * and only takes it if something needs repairing. Only the first
+     * call on a Journal does anything, as this process's own writers
+     * leave nothing to repair while it runs. */
+    @SuppressWarnings("try")
+    void recover() {
+        synchronized (this) {
+            if (_recovered) {
+                return;
+            }
+            _recovered = true;
+        }
+        if (!_file.isFile() || _file.length() == 0 || consistent()) {
+            return;
+        }
+        try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+            List<Record> records = records(identity(_snapshot));
+            long valid = validLength();
+            if (valid < _file.length()) {
+                try (FileChannel ch = FileChannel.open(_file.toPath(), StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                    ch.force(false);
+                    Trace.count(Trace.FSYNCS, 1);
+                }
+            }
+            for (Map.Entry<String, Record> e : lastWrites(records).entrySet()) {
+                File target = Utils.join(_gitlet, e.getKey());
+                Record r = e.getValue();
+                if (r.type == DELETE) {
+                    target.delete();
+                } else {
+                    byte[] payload = payload(r);
+                    if (!matches(target, payload)) {
+                        target.getParentFile().mkdirs();
+                        Utils.writeAtomically(target, payload);
+                        force(target.toPath());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot recover journal: " + e.getMessage());
+        }
+    }
+
+    /** Folds the journal into a freshly fsynced snapshot and empties it.
+     * The caller must hold the writer lock. */
+    void checkpoint() {
+        checkpoint(Set.of());
+    }
+
+    /** Folds the journal into a freshly fsynced snapshot, leaving out
+     * the commits whose ID's are in DROPPED, and empties it. A reader
+     * sees either the old history or the new one. The caller must hold
+     * the writer lock. */
+    void checkpoint(Set<String> dropped) {
+        Trace.run("journal.checkpoint", () -> fold(dropped));
+    }
+
+    /** Does the work of checkpoint(DROPPED). */
+    private void fold(Set<String> dropped) {
+        try {
+            CommitIndex history = loadHistory();
+            for (String id : dropped) {
+                history.remove(id);
+            }
+            List<Record> records = records(identity(_snapshot));
+            File tmp = File.createTempFile(".commit_history.", ".tmp", _gitlet);
+            TimeIndex.write(tmp, history.values());
+            force(tmp.toPath());
+            Files.move(tmp.toPath(), _snapshot.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(Utils.join(_gitlet, "timestamps").toPath()); // older index
+            for (Map.Entry<String, Record> e : lastWrites(records).entrySet()) {
+                File target = Utils.join(_gitlet, e.getKey());
+                if (e.getValue().type == WRITE && target.exists()) {
+                    force(target.toPath());
+                }
+            }
+            sync();
+            force(_gitlet.toPath());
+            synchronized (this) {
+                channel().truncate(0);
+                _channel.force(false);
+                Trace.count(Trace.FSYNCS, 1);
+                _appended = 0;
+                _durable = 0;
+                _generation += 1;
+                reset();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot checkpoint journal: " + e.getMessage());
+        }
+    }
+
+    /** Appends a record of TYPE for KEY holding PAYLOAD. */
+    private synchronized void append(byte type, String key, byte[] payload) {
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        int len = 1 + 2 + name.length + payload.length;
+        ByteBuffer body = ByteBuffer.allocate(len);
+        body.put(type).putShort((short) name.length).put(name).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(len).putInt((int) crc.getValue());
+        header.flip();
+        body.flip();
+        try {
+            FileChannel ch = channel();
+            ByteBuffer[] record = {header, body};
+            while (body.hasRemaining()) {
+                ch.write(record);
+            }
+            long start = ch.position() - HEADER - len;
+            if (start < _appended) {
+                /* Another process has checkpointed and cut the journal
+                 * back, so what was durable before says nothing now. */
+                _durable = Math.min(_durable, start);
+                _generation += 1;
+            }
+            _appended = ch.position();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot append to journal: " + e.getMessage());
+        }
+    }
+
+    /** Returns the channel records are appended through, opening it if
+     * need be. */
+    private synchronized FileChannel channel() throws IOException {
+        if (_channel == null) {
+            _channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return _channel;
+    }
+
+    /** Brings the index of records up to date with the journal and
+     * returns the complete records in it, stopping at the first one that
+     * is cut short or fails its checksum. Only what was appended since
+     * the last call is read, unless the snapshot is no longer the one
+     * last seen, with IDENTITY, or the journal has been cut back, as a
+     * checkpoint does; then it is read again from the start. */
+    private synchronized List<Record> records(Object identity) {
+        try {
+            if (!_file.isFile()) {
+                reset();
+                return List.of();
+            }
+            FileChannel in = reader();
+            long size = in.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            boolean replaced = identity == null ? _indexed != null : !identity.equals(_indexed);
+            if (replaced || size < _valid
+                || _valid > 0 && (!read(in, header, _last) || header.getLong(0) != _lastHeader)) {
+                reset();
+            }
+            _indexed = identity;
+            while (size - _valid >= HEADER && read(in, header, _valid)) {
+                int len = header.getInt(0);
+                int sum = header.getInt(4);
+                if (len < 3 || len > size - _valid - HEADER) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(len);
+                if (!read(in, body, _valid + HEADER)) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(body.array());
+                int name = body.getShort(1) & 0xffff;
+                if ((int) crc.getValue() != sum || 3 + name > len) {
+                    break;
+                }
+                String key = new String(body.array(), 3, name, StandardCharsets.UTF_8);
+                _records.add(new Record(body.get(0), key, _valid + HEADER + 3 + name,
+                                        len - 3 - name));
+                _last = _valid;
+                _lastHeader = header.getLong(0);
+                _valid += HEADER + len;
+            }
+            return new ArrayList<>(_records);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read journal: " + e.getMessage());
+        }
+    }
+
+    /** Returns the length of the journal up to the end of the last
+     * complete record records() found. */
+    private synchronized long validLength() {
+        return _valid;
+    }
+
+    /** Empties the index of records. */
+    private synchronized void reset() {
+        _records.clear();
+        _valid = 0;
+        _last = 0;
+        _lastHeader = 0;
+        _indexed = null;
+    }
+
+    /** Fills BUFFER from IN at POSITION, returning false if IN ends
+     * first. */
+    private static boolean read(FileChannel in, ByteBuffer buffer, long position)
+        throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, position + buffer.position());
+            if (n < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the payload of R, read from the journal. */
+    private byte[] payload(Record r) {
+        ByteBuffer result = ByteBuffer.allocate(r.length);
+        try {
+            if (!read(reader(), result, r.offset)) {
+                throw new IllegalArgumentException("journal ends inside a record");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read journal: " + e.getMessage());
+        }
+        return result.array();
+    }
+
+    /** Returns the channel the journal is read through, opening it if
+     * need be. */
+    private synchronized FileChannel reader() throws IOException {
+        if (_reader == null) {
+            _reader = FileChannel.open(_file.toPath(), StandardOpenOption.READ);
+        }
+        return _reader;
+    }
+
+    /** Returns the last WRITE or DELETE record for each path among
+     * RECORDS. */
+    private static Map<String, Record> lastWrites(List<Record> records) {
+        LinkedHashMap<String, Record> result = new LinkedHashMap<>();
+        for (Record r : records) {
+            if (r.type == WRITE || r.type == DELETE) {
+                result.put(r.key, r);
+            }
+        }
+        return result;
+    }
+
+    /** Returns whether the journal ends on a whole record and every file
+     * it mentions holds what its last record says. */
+    private boolean consistent() {
+        List<Record> records = records(identity(_snapshot));
+        if (validLength() != _file.length()) {
+            return false;
+        }
+        for (Map.Entry<String, Record> e : lastWrites(records).entrySet()) {
+            File target = Utils.join(_gitlet, e.getKey());
+            Record r = e.getValue();
+            if (r.type == DELETE ? target.exists() : !matches(target, r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether FILE holds what the WRITE record R says. Large
+     * object files are compared by length alone. */
+    private boolean matches(File file, Record r) {
+        if (!file.isFile() || file.length() != r.length) {
+            return false;
+        }
+        return r.length > 4096 || Arrays.equals(Utils.readContents(file), payload(r));
+    }
+
+    /** Returns whether FILE holds exactly DATA. Large object files are
+     * compared by length alone. */
+    private static boolean matches(File file, byte[] data) {
+        if (!file.isFile() || file.length() != data.length) {
+            return false;
+        }
+        return data.length > 4096 || Arrays.equals(Utils.readContents(file), data);
+    }
+
+    /** Returns whether FILE is named by what it holds: its name is an
+     * object ID, alone or before a dot. */
+    private static boolean isObject(File file) {
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        return ObjectIds.isId(dot < 0 ? name : name.substring(0, dot));
+    }
+
+    /** Returns the path of FILE relative to the .gitlet directory. */
+    private String relative(File file) {
+        return _gitlet.toPath().relativize(file.getAbsoluteFile().toPath()).toString();
+    }
+
+    /** Flushes PATH, a file or directory, to disk. */
+    static void force(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ch.force(true);
+            Trace.count(Trace.FSYNCS, 1);
+        } catch (IOException e) {
+            if (!Files.isDirectory(path)) {
+                throw e;
+            }
+            /* Not every platform can fsync a directory. */
+        }
+    }
+
+    /** Returns something that changes whenever FILE is replaced, or null
+     * if it does not exist. */
+    private static Object identity(File file) {
+        try {
+            BasicFileAttributes attrs =
+                Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            Object key = attrs.fileKey();
+            return key != null ? key : attrs.lastModifiedTime();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Returns the positive number in environment variable NAME, or
+     * DEFAULT. */
+    private static long longSetting(String name, long dflt) {
+        String value = System.getenv(name);
+        if (value != null) {
+            try {
+                return Math.max(0, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                /* Fall through to the default. */
+            }
+        }
+        return dflt;
+    }
+
+    /** One journal record, without its payload. */
+    private static class Record {
+        /** A record of TYPE for KEY whose payload is the LENGTH bytes of
+         * the journal at OFFSET. */
+        Record(byte type, String key, long offset, int length) {
+            this.type = type;
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /** COMMIT, WRITE or DELETE. */
+        final byte type;
+
+        /** The commit ID or file path the record is about. */
+        final String key;
+
+        /** Where in the journal the payload starts. */
+        final long offset;
+
+        /** Length of the payload. */
+        final int length;
+    }
+
+    /** Journals of this process, by canonical .gitlet path. */
+    private static final ConcurrentHashMap<String, Journal> JOURNALS =
+        new ConcurrentHashMap<>();
+
+    /** Decoded blobs, commits and snapshots of every journal of this
+     * process, under one budget, each keyed by its journal's .gitlet
+     * path and then its ID or file name. */
+    private static final ObjectCache OBJECTS = new ObjectCache(
+        longSetting(ObjectCache.BUDGET_VARIABLE, ObjectCache.DEFAULT_BUDGET));
+
+    /** The .gitlet directory. */
+    private final File _gitlet;
+
+    /** The journal file. */
+    private final File _file;
+
+    /** The commit history snapshot. */
+    private final File _snapshot;
+
+    /** Journal size that triggers a checkpoint. */
+    private final long _limit;
+
+    /** How long a group commit leader waits for followers. */
+    private final long _windowMicros;
+
+    /** What this journal's keys in OBJECTS begin with. */
+    private final String _prefix;
+
+    /** Channel appending to _file, opened on first use. */
+    private FileChannel _channel;
+
+    /** Channel reading _file, opened on first use. */
+    private FileChannel _reader;
+
+    /** The records read so far, in order. */
+    private final List<Record> _records = new ArrayList<>();
+
+    /** Length of the journal up to the end of the last record in
+     * _records. */
+    private long _valid;
+
+    /** Where the last record in _records starts. */
+    private long _last;
+
+    /** The header of that record, to tell whether it is still there. */
+    private long _lastHeader;
+
+    /** Identity of the snapshot when _records was read. */
+    private Object _indexed;
+
+    /** Whether recover() has run. */
+    private boolean _recovered;
+
+    /** Journal length after this process's last append. */
+    private long _appended;
+
+    /** Journal length known to be on disk. */
+    private long _durable;
+
+    /** How many times this process has seen the journal cut back, by its
+     * own checkpoint or another process's; _appended and _durable are
+     * lengths within the current one. */
+    private long _generation;
+
+    /** Whether some thread is running sync(). */
+    private boolean _syncing;
+
+    /** Large objects written in place and not yet fsynced. */
+    private final List<File> _unsynced = new ArrayList<>();
+}
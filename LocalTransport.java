@@ -0,0 +1,159 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/** A Transport to a repository whose .gitlet directory is reachable
+ * through the file system. The Server also uses one to serve its own
+ * repository.
+ * @author Jake Clayton */
+class LocalTransport implements Transport {
+
+    /** A transport to the .gitlet directory REMOTEGIT. */
+    LocalTransport(File remoteGit) {
+        _remoteGit = remoteGit;
+        Refs.migrate(remoteGit);
+        _refs = new Refs(remoteGit);
+        _journal = Journal.of(remoteGit);
+        _journal.recover();
+    }
+
+    @Override
+    public Map<String, String> refs() {
+        return _refs.branches();
+    }
+
+    /** Returns the repository's map of commit ID's to commits. */
+    CommitIndex history() {
+        return _journal.loadHistory();
+    }
+
+    /** Returns the repository's reachability bitmaps. */
+    Bitmaps bitmaps() {
+        return Bitmaps.load(_remoteGit);
+    }
+
+    /** Returns the stored bytes of the blob with the given ID. */
+    byte[] readObject(String id) {
+        return Utils.readContents(Utils.join(_remoteGit, id));
+    }
+
+    /** Stores CONTENTS as the blob with the given ID, unless it is
+     * already present. */
+    void storeObject(String id, byte[] contents) {
+        File dest = Utils.join(_remoteGit, id);
+        if (!dest.exists()) {
+            _journal.write(dest, contents);
+        }
+    }
+
+    @Override
+    public String fetch(String branch, Collection<String> have, Set<String> shallow, int depth,
+                        FetchCheckpoint into) {
+        CommitIndex rH = history();
+        String head = _refs.get(branch);
+        if (head == null) {
+            return null;
+        }
+        try (ObjectTransfer transfer = new ObjectTransfer()) {
+            Predicate<String> held = Pack.held(rH, have, shallow, bitmaps());
+            for (Commit c : Pack.missingCommits(head, rH, held, shallow, depth)) {
+                for (String id : into.expect(c)) {
+                    transfer.submit(id, () -> into.store(id, readObject(id)));
+                }
+            }
+            transfer.await();
+        }
+        return head;
+    }
+
+    @Override
+    public void fetchBlobs(Collection<String> ids, BiConsumer<String, byte[]> into) {
+        try (ObjectTransfer transfer = new ObjectTransfer()) {
+            for (String id : ids) {
+                if (Utils.join(_remoteGit, id).isFile()) {
+                    transfer.submit(id, () -> into.accept(id, readObject(id)));
+                }
+            }
+            transfer.await();
+        }
+    }
+
+    @Override
+    public String push(String branch, String expected, String head, List<Commit> commits,
+                       Collection<String> blobs, File objects) {
+        for (String id : blobs) {
+            storeObject(id, Utils.readContents(Utils.join(objects, id)));
+        }
+        return update(branch, expected, head, commits);
+    }
+
+    /** Adds COMMITS, whose blobs must already be stored, to the history
+     * and moves BRANCH from EXPECTED to HEAD. COMMITS must be ordered so
+     * that each comes after its parents among them, and the order is
+     * checked against the history, and the branch compared with
+     * EXPECTED, under the writer lock, so that a concurrent push cannot
+     * slip in between. Returns null on success, otherwise the reason the
+     * branch could not be moved. */
+    @SuppressWarnings("try")
+    String update(String branch, String expected, String head, List<Commit> commits) {
+        String result;
+        try (RepositoryLock lock = RepositoryLock.acquire(_remoteGit)) {
+            result = updateLocked(branch, expected, head, commits);
+        }
+        _journal.sync();
+        return result;
+    }
+
+    /** Does the work of update() while holding the writer lock. */
+    private String updateLocked(String branch, String expected, String head,
+                                List<Commit> commits) {
+        CommitIndex history = history();
+        for (Commit c : commits) {
+            for (String parent : new String[] {c.getParent(), c.getParent2()}) {
+                if (parent != null && !history.containsKey(parent)) {
+                    return "Pushed commit " + c.get_hashCode() + " arrived before its parents.";
+                }
+            }
+            history.put(c.get_hashCode(), c);
+        }
+        if (!history.containsKey(head)) {
+            return "The pushed head " + head + " is not in the remote history.";
+        } else if (expected != null
+                   && !Pack.isAncestor(expected, head, history, bitmaps())) {
+            return "The pushed head " + head + " does not descend from " + expected + ".";
+        }
+        _journal.addCommits(commits);
+        if (!_refs.compareAndSet(branch, expected, head)) {
+            return "Remote branch changed during push; fetch and try again.";
+        }
+        if (branch.equals(_refs.activeBranch())) {
+            File stagingInfo = Utils.join(_remoteGit, "staging");
+            for (File del : Utils.join(stagingInfo, "addition").listFiles()) {
+                del.delete();
+            }
+            for (File del : Utils.join(stagingInfo, "removal").listFiles()) {
+                del.delete();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** The other repository's .gitlet directory. */
+    private final File _remoteGit;
+
+    /** The other repository's branches. */
+    private final Refs _refs;
+
+    /** The other repository's journal. */
+    private final Journal _journal;
+}
@@ -1,165 +1,349 @@
 package gitlet;
 
 import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
+ * Checks the operands of each command and hands it to a Repository
+ * for the current directory, printing any error it reports.
  *  @author Jake Clayton */
 public class Main {
 
     /** The command working directory. */
     static final File CWD = new File(System.getProperty("user.dir"));
 
-    /** The .gitlet directory for all persistence. */
-    static final File GITLET_FOLDER = Utils.join(CWD, ".gitlet");
-
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+    /** Usage: java gitlet.Main [--trace] ARGS, where ARGS contains
+     *  <COMMAND> <OPERAND> .... With --trace, or with GITLET_TRACE set,
+     *  the time spent in each phase of the command and the I/O it did
+     *  are reported on the standard error. */
     public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("--trace")) {
+            Trace.enable();
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        long start = System.nanoTime();
+        String failure = null;
+        try {
+            run(args);
+        } catch (GitletException e) {
+            failure = e.getMessage();
+        }
+        if (Trace.enabled()) {
+            Trace.report(String.join(" ", args), System.nanoTime() - start, System.err);
+        }
+        if (failure != null) {
+            error(failure);
+        }
+    }
+
+    /** Runs the command in ARGS. */
+    private static void run(String... args) {
         if (args.length == 0) {
-            error("Please enter a command.");
+            throw new GitletException("Please enter a command.");
         }
         if (args[0].equals("init")) {
-            if (args.length == 1) {
-                setupDirectory();
-                return;
+            operands(args, 1, "Incorrect operands.");
+            Repository.init(CWD);
+        } else if (args[0].equals("clone")) {
+            clone(args);
+        } else {
+            dispatch(Repository.open(CWD), args);
+        }
+    }
+
+    /** Runs the command in ARGS against REPO. */
+    private static void dispatch(Repository repo, String... args) {
+        switch (args[0]) {
+        case "add":
+            operands(args, 2, "Incorrect operands.");
+            repo.add(args[1]);
+            break;
+        case "commit":
+            if (args.length == 1 || args[1].length() == 0) {
+                throw new GitletException("Please enter a commit message.");
+            }
+            operands(args, 2, "Incorrect operands.");
+            repo.commit(args[1]);
+            break;
+        case "rm":
+            operands(args, 2, "Incorrect operands.");
+            repo.rm(args[1]);
+            break;
+        case "log":
+            long[] range = range(args);
+            if (range == null) {
+                repo.log();
+            } else {
+                repo.log(range[0], range[1]);
+            }
+            break;
+        case "global-log":
+            range = range(args);
+            if (range == null) {
+                repo.globalLog();
             } else {
-                error("Incorrect operands.");
+                repo.globalLog(range[0], range[1]);
             }
-        } else if (!GITLET_FOLDER.exists()) {
-            error("Not in an initialized Gitlet directory.");
-        } else if (args[0].equals("add")) {
-            add(args);
-        } else if (args[0].equals("commit")) {
-            commit(args);
-        } else if (args[0].equals("rm")) {
-            remove(args);
-        } else if (args[0].equals("log")) {
-            log(args);
-        } else if (args[0].equals("global-log")) {
-            globalLog(args);
-        } else if (args[0].equals("find")) {
-            CommitTree.find(args);
-        } else if (args[0].equals("status")) {
-            printStatus();
-        } else if (args[0].equals("checkout")) {
-            checkout(args);
-        } else if (args[0].equals("branch")) {
-            branch(args);
-        } else if (args[0].equals("rm-branch")) {
-            rmBranch(args);
-        } else if (args[0].equals("reset")) {
-            CommitTree.reset(args);
-        } else if (args[0].equals("merge")) {
-            CommitTree.merge(args);
-        } else if (args[0].equals("add-remote")) {
-            addRemote(args);
-        } else if (args[0].equals("rm-remote")) {
-            rmRemote(args);
-        } else if (args[0].equals("push")) {
-            push(args);
-        } else if (args[0].equals("fetch")) {
-            fetch(args);
-        } else if (args[0].equals("pull")) {
-            Remote.pull(args);
+            break;
+        case "find":
+            operands(args, 2, "Incorrect operands.");
+            repo.find(args[1]);
+            break;
+        case "fast-import":
+            operands(args, 1, "Incorrect operands.");
+            repo.fastImport(System.in);
+            break;
+        case "fast-export":
+            fastExport(repo, args);
+            break;
+        case "archive":
+            archive(repo, args);
+            break;
+        case "blame":
+            operands(args, 2, "Incorrect operands.");
+            repo.blame(args[1]);
+            break;
+        case "status":
+            repo.status();
+            break;
+        case "checkout":
+            checkout(repo, args);
+            break;
+        case "branch":
+            operands(args, 2, "Incorrect operands.");
+            repo.branch(args[1]);
+            break;
+        case "rm-branch":
+            operands(args, 2, "Incorrect operands.");
+            repo.rmBranch(args[1]);
+            break;
+        case "pack-refs":
+            operands(args, 1, "Incorrect operands.");
+            repo.packRefs();
+            break;
+        case "reset":
+            operands(args, 2, "Incorrect operands.");
+            repo.reset(args[1]);
+            break;
+        case "merge":
+            operands(args, 2, "Incorrect operands.");
+            repo.merge(args[1]);
+            break;
+        case "add-remote":
+            operands(args, 3, "Incorrect operands.");
+            repo.addRemote(args[1], args[2]);
+            break;
+        case "rm-remote":
+            operands(args, 2, "Incorrect operands.");
+            repo.rmRemote(args[1]);
+            break;
+        case "push":
+            operands(args, 3, "Incorrect operands.");
+            repo.push(args[1], args[2]);
+            break;
+        case "fetch":
+            int depth = depth(args, 3);
+            repo.fetch(args[1], args[2], depth);
+            break;
+        case "pull":
+            operands(args, 3, "Incorrect operands.");
+            repo.pull(args[1], args[2]);
+            break;
+        case "sparse-checkout":
+            sparseCheckout(repo, args);
+            break;
+        case "gc":
+            gc(repo, args);
+            break;
+        case "fsck":
+            operands(args, 1, "Incorrect operands.");
+            repo.fsck();
+            break;
+        case "serve":
+            if (args.length > 2) {
+                throw new GitletException("Incorrect operands.");
+            }
+            repo.serve(args.length == 2 ? args[1] : "");
+            break;
+        default:
+            throw new GitletException("No command with that name exists.");
+        }
+    }
+
+    /** Directs the checkout command in ARGS to REPO. */
+    private static void checkout(Repository repo, String... args) {
+        if (args.length == 2) {
+            repo.checkoutBranch(args[1]);
+        } else if (args.length == 3 && args[1].equals("--")) {
+            repo.checkoutFile(args[2]);
+        } else if (args.length == 4 && args[2].equals("--")) {
+            repo.checkoutFile(args[1], args[3]);
         } else {
-            error("No command with that name exists.");
+            throw new GitletException("Incorrect operands.");
         }
     }
 
-    /** Returns the .gitlet directory file path. */
-    public static File getDirectory() {
-        return GITLET_FOLDER;
+    /** Directs the sparse-checkout command in ARGS, which is "set"
+     * followed by patterns, "list" or "disable", to REPO. */
+    private static void sparseCheckout(Repository repo, String... args) {
+        if (args.length >= 3 && args[1].equals("set")) {
+            repo.sparseCheckout(Arrays.asList(args).subList(2, args.length));
+        } else if (args.length == 2 && args[1].equals("list")) {
+            for (String pattern : repo.sparsePatterns()) {
+                repo.out().println(pattern);
+            }
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            repo.sparseCheckout(List.of());
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
     }
-    /** Initializes the .gitlet directory. */
-    public static void setupDirectory() {
-        if (GITLET_FOLDER.exists()) {
-            String m = "A Gitlet version-control system already exists";
-            m += " in the current directory.";
-            error(m);
-        }
-        GITLET_FOLDER.mkdir();
-        Remote.initialize();
-        StagingArea.initialize();
-        CommitTree.initCommit();
+
+    /** Directs the archive command in ARGS, a commit or branch with an
+     * optional --format=tar or --format=zip before it, to REPO. */
+    private static void archive(Repository repo, String... args) {
+        if (args.length == 2) {
+            repo.archive(args[1], Archive.TAR);
+        } else if (args.length == 3 && args[1].startsWith("--format=")) {
+            String format = args[1].substring(9);
+            if (!format.equals(Archive.TAR) && !format.equals(Archive.ZIP)) {
+                throw new GitletException("Incorrect operands.");
+            }
+            repo.archive(args[2], format);
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
     }
 
-    /** Directs the add command to StagingArea.
-     * @param args */
-    public static void add(String... args) {
-        if (args.length != 2) {
-            error("Incorrect operands.");
+    /** Directs the fast-export command in ARGS, branches to export and
+     * commits or branches, each after a "^", to leave out, to REPO. */
+    private static void fastExport(Repository repo, String... args) {
+        ArrayList<String> branches = new ArrayList<>();
+        ArrayList<String> excluded = new ArrayList<>();
+        for (int i = 1; i < args.length; i += 1) {
+            if (args[i].startsWith("^")) {
+                excluded.add(args[i].substring(1));
+            } else {
+                branches.add(args[i]);
+            }
         }
-        File current = Utils.join(CWD, new File(args[1]).getName());
-        StagingArea.add(current);
+        repo.fastExport(branches, excluded);
     }
 
-    /** Directs the commit command to CommitTree.
-     * @param args */
-    public static void commit(String... args) {
-        if (args.length == 1 || args[1].length() == 0) {
-            error("Please enter a commit message.");
-        } else if (args.length != 2) {
-            error("Incorrect operands.");
-        } else if (StagingArea.isEmpty()) {
-            error("No changes added to the commit.");
-        }
-        CommitTree.addCommit(args[1], null);
+    /** Directs the gc command in ARGS, with its optional grace period,
+     * to REPO. */
+    private static void gc(Repository repo, String... args) {
+        long grace = GarbageCollector.DEFAULT_GRACE;
+        if (args.length == 3 && args[1].equals("--grace")) {
+            try {
+                grace = Long.parseLong(args[2]);
+            } catch (NumberFormatException e) {
+                throw new GitletException("Incorrect operands.");
+            }
+        } else {
+            operands(args, 1, "Incorrect operands.");
+        }
+        repo.gc(grace);
     }
 
-    /** Directs the branch command to CommitTree.
-     * @param args */
-    public static void branch(String... args) {
-        if (args.length != 2) {
-            error("Incorrect operands.");
+    /** Directs the clone command in ARGS, with its optional --depth N
+     * and --filter=blob:none, to a new repository in CWD. */
+    private static void clone(String... args) {
+        if (args.length < 2) {
+            throw new GitletException("Incorrect operands.");
+        }
+        int depth = 0;
+        boolean blobs = true;
+        for (int i = 2; i < args.length; i += 1) {
+            if (args[i].equals("--filter=blob:none")) {
+                blobs = false;
+            } else if (args[i].equals("--depth") && i + 1 < args.length) {
+                i += 1;
+                depth = positive(args[i]);
+            } else {
+                throw new GitletException("Incorrect operands.");
+            }
         }
-        CommitTree.branch(args[1]);
+        Repository.clone(CWD, args[1], depth, blobs);
     }
 
-    /** Directs the rm-branch command to CommitTree.
-     * @param args */
-    public static void rmBranch(String... args) {
-        if (args.length != 2) {
-            error("Incorrect operands.");
+    /** Returns the N of a "--depth N" that follows the first WORDS words
+     * of ARGS, or 0 if ARGS holds only those words. */
+    private static int depth(String[] args, int words) {
+        if (args.length == words) {
+            return 0;
+        } else if (args.length == words + 2 && args[words].equals("--depth")) {
+            return positive(args[words + 1]);
         }
-        CommitTree.rmBranch(args[1]);
+        throw new GitletException("Incorrect operands.");
     }
 
-    /** Directs the remove command to StagingArea.
-     * @param args */
-    public static void remove(String... args) {
-        if (args.length != 2) {
-            error("Incorrect operands.");
+    /** Returns the times of the --since and --until options that follow
+     * the command in ARGS, in milliseconds since the epoch, or null if
+     * there are none. Either may be left out. */
+    private static long[] range(String[] args) {
+        if (args.length == 1) {
+            return null;
         }
-        StagingArea.rm(args[1]);
+        long[] result = {Long.MIN_VALUE, Long.MAX_VALUE};
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new GitletException("Incorrect operands.");
+            } else if (args[i].equals("--since")) {
+                result[0] = time(args[i + 1], false);
+            } else if (args[i].equals("--until")) {
+                result[1] = time(args[i + 1], true);
+            } else {
+                throw new GitletException("Incorrect operands.");
+            }
+        }
+        return result;
     }
 
-    /** Directs the log command to class CommitTree.
-     * @param args */
-    public static void log(String... args) {
-        if (args.length != 1) {
-            error("Incorrect operands");
+    /** Returns the time WORD, a local date such as 2024-01-31 or date
+     * and time such as 2024-01-31T09:30, in milliseconds since the
+     * epoch. A date alone is its last moment if END, else its first. */
+    private static long time(String word, boolean end) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            if (word.contains("T")) {
+                return LocalDateTime.parse(word).atZone(zone).toInstant().toEpochMilli();
+            }
+            LocalDate date = LocalDate.parse(word);
+            if (end) {
+                return date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+            }
+            return date.atStartOfDay(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new GitletException("Incorrect date: " + word);
         }
-        CommitTree.printCommitHistory();
     }
 
-    /** Directs the global-log command to class CommitTree.
-     * @param args */
-    public static void globalLog(String... args) {
-        if (args.length != 1) {
-            error("Incorrect operands");
+    /** Returns the positive number WORD. */
+    private static int positive(String word) {
+        try {
+            int n = Integer.parseInt(word);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            /* Reported below. */
         }
-        CommitTree.printAllCommits();
+        throw new GitletException("Incorrect operands.");
     }
 
-    /** Directs the checkout command to class CommitTree.
-     * @param args */
-    public static void checkout(String... args) {
-        if (args.length < 2) {
-            error("Incorrect operands");
+    /** Reports MESSAGE unless ARGS holds exactly N words. */
+    private static void operands(String[] args, int n, String message) {
+        if (args.length != n) {
+            throw new GitletException(message);
         }
-        CommitTree.checkout(Arrays.copyOfRange(args, 1, args.length));
     }
 
     /** Prints out MESSAGE and exits with error code 0.
@@ -170,35 +354,4 @@ public class Main {
         }
         System.exit(0);
     }
-
-    /** Directs the status command to StagingArea. */
-    public static void printStatus() {
-        StagingArea.printStatus();
-    }
-
-    /** Directs the add-remote command to Remote.
-     * @param args */
-    public static void addRemote(String... args) {
-        Remote.addRemote(args);
-    }
-
-    /** Directs the rm-remote command to Remote.
-     * @param args  */
-    public static void rmRemote(String... args) {
-        Remote.rmRemote(args);
-    }
-
-    /** Directs the push command to Remote.
-     * @param args */
-    public static void push(String... args) {
-        Remote.push(args);
-    }
-
-    /** Directs the fetch command to remote.
-     * @param args */
-    public static void fetch(String... args) {
-        Remote.fetch(args);
-    }
-
 }
-
@@ -0,0 +1,15 @@
+package gitlet;
+
+/** A GitletException for a commit, branch, file or remote that does not
+ * exist.
+ * @author Jake Clayton */
+public class NotFoundException extends GitletException {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** A NotFoundException with MSG as its message. */
+    public NotFoundException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,137 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A least-recently-used cache of decoded objects, bounded by the
+ * approximate number of bytes they occupy rather than by their count.
+ * Objects are keyed by ID and, being named by their contents, never go
+ * stale, so nothing is ever invalidated; the least recently used
+ * objects are simply dropped once the budget is exceeded. Safe for use
+ * by several threads.
+ * @author Jake Clayton */
+class ObjectCache {
+
+    /** Environment variable setting the budget, in bytes. Zero turns
+     * the cache off. */
+    static final String BUDGET_VARIABLE = "GITLET_CACHE_BYTES";
+
+    /** The budget when none is set. */
+    static final long DEFAULT_BUDGET = 64L << 20;
+
+    /** A cache holding at most BUDGET bytes of objects. */
+    ObjectCache(long budget) {
+        _budget = budget;
+    }
+
+    /** Returns the object with ID of class TYPE, or null if it is not
+     * cached. */
+    synchronized <T> T get(String id, Class<T> type) {
+        Entry e = _entries.get(id);
+        if (e == null || !type.isInstance(e.value)) {
+            _misses += 1;
+            Trace.count(Trace.CACHE_MISSES, 1);
+            return null;
+        }
+        _hits += 1;
+        Trace.count(Trace.CACHE_HITS, 1);
+        return type.cast(e.value);
+    }
+
+    /** Caches VALUE under ID as occupying WEIGHT bytes, evicting the
+     * least recently used objects as needed. Objects heavier than the
+     * whole budget are not cached. */
+    synchronized void put(String id, Object value, long weight) {
+        if (weight > _budget) {
+            return;
+        }
+        Entry old = _entries.put(id, new Entry(value, weight));
+        if (old != null) {
+            _size -= old.weight;
+        }
+        _size += weight;
+        Iterator<Entry> lru = _entries.values().iterator();
+        while (_size > _budget && lru.hasNext()) {
+            _size -= lru.next().weight;
+            lru.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Drops every object whose key begins with PREFIX. */
+    synchronized void drop(String prefix) {
+        Iterator<Map.Entry<String, Entry>> it = _entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().startsWith(prefix)) {
+                _size -= e.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    /** Returns the number of lookups that found their object. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of lookups that did not. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Returns the number of objects dropped to stay within budget. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Returns the approximate bytes currently cached. */
+    synchronized long size() {
+        return _size;
+    }
+
+    /** Returns the budget in bytes. */
+    long budget() {
+        return _budget;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache: %d hits, %d misses, %d evictions, %d/%d bytes",
+            _hits, _misses, _evictions, _size, _budget);
+    }
+
+    /** A cached object and its weight. */
+    private static class Entry {
+        /** An entry for VALUE weighing WEIGHT bytes. */
+        Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        /** The decoded object. */
+        final Object value;
+        /** Its approximate size in bytes. */
+        final long weight;
+    }
+
+    /** The most bytes of objects held at once. */
+    private final long _budget;
+
+    /** Cached objects from least to most recently used. */
+    private final LinkedHashMap<String, Entry> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The total weight of _entries. */
+    private long _size;
+
+    /** Lookups that found their object. */
+    private long _hits;
+
+    /** Lookups that did not. */
+    private long _misses;
+
+    /** Objects dropped to stay within budget. */
+    private long _evictions;
+}
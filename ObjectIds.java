@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/** Object ID's packed into longs. An ID is "b" for a blob or "c" for a
+ * commit followed by the forty hex digits of a SHA-1 hash; ID's made
+ * before they were full length hold only the first nine digits, and stay
+ * valid. An ID packs exactly into WORDS longs: its first sixteen digits,
+ * its next sixteen, and its last eight in the low 32 bits of the third
+ * word, with its kind above them, as 1 for a blob and 2 for a commit, and
+ * above that a bit set for a short ID. No packed ID has a third word of
+ * 0. Tables keyed by packed ID's hold WORDS longs per entry where a String
+ * key would cost two objects of its own.
+ * @author Jake Clayton */
+class ObjectIds {
+
+    /** Blob ID's, which are also the names of blob files in the object
+     * store. */
+    static final Pattern BLOB = Pattern.compile("b([0-9a-f]{40}|[0-9a-f]{9})");
+
+    /** Commit ID's. */
+    static final Pattern COMMIT = Pattern.compile("c([0-9a-f]{40}|[0-9a-f]{9})");
+
+    /** Hex digits in an ID. */
+    static final int DIGITS = 40;
+
+    /** Hex digits in a short ID. */
+    static final int SHORT_DIGITS = 9;
+
+    /** Longs in a packed ID. */
+    static final int WORDS = 3;
+
+    /** Bit of the third word marking a short ID. */
+    private static final long SHORT = 1L << 34;
+
+    /** Bits of the first word past the digits of a short ID. */
+    private static final long SHORT_TAIL = -1L >>> 4 * SHORT_DIGITS;
+
+    /** The value of each lower-case hex digit, indexed by character, and
+     * -1 for every other character below 128. */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 16; i += 1) {
+            VALUES[Character.forDigit(i, 16)] = (byte) i;
+        }
+    }
+
+    /** Packs ID into the WORDS longs of INTO from AT, returning false and
+     * leaving INTO alone if ID is not an object ID. */
+    static boolean pack(String id, long[] into, int at) {
+        if (id == null || id.length() != DIGITS + 1 && id.length() != SHORT_DIGITS + 1) {
+            return false;
+        }
+        long kind;
+        if (id.charAt(0) == 'b') {
+            kind = 1;
+        } else if (id.charAt(0) == 'c') {
+            kind = 2;
+        } else {
+            return false;
+        }
+        long[] words = new long[WORDS];
+        for (int i = 1; i < id.length(); i += 1) {
+            char c = id.charAt(i);
+            int digit = c < VALUES.length ? VALUES[c] : -1;
+            if (digit < 0) {
+                return false;
+            }
+            int d = i - 1;
+            words[d / 16] |= (long) digit << (d < 32 ? 60 - 4 * (d % 16) : 28 - 4 * (d % 16));
+        }
+        words[2] |= kind << 32 | (id.length() == DIGITS + 1 ? 0 : SHORT);
+        System.arraycopy(words, 0, into, at, WORDS);
+        return true;
+    }
+
+    /** Returns whether ID is an object ID. */
+    static boolean isId(String id) {
+        return pack(id, new long[WORDS], 0);
+    }
+
+    /** Returns the ID packed into the WORDS longs of FROM at AT. */
+    static String unpack(long[] from, int at) {
+        boolean isShort = (from[at + 2] & SHORT) != 0;
+        char[] id = new char[1 + (isShort ? SHORT_DIGITS : DIGITS)];
+        id[0] = ((from[at + 2] >>> 32) & 3) == 1 ? 'b' : 'c';
+        for (int d = 0; d < id.length - 1; d += 1) {
+            long word = from[at + d / 16];
+            int shift = d < 32 ? 60 - 4 * (d % 16) : 28 - 4 * (d % 16);
+            id[d + 1] = Character.forDigit((int) ((word >>> shift) & 0xf), 16);
+        }
+        return new String(id);
+    }
+
+    /** Returns whether the WORDS longs of FROM at AT hold a blob ID
+     * packed as pack would pack it: the third word holds the blob kind,
+     * perhaps the short bit and nothing above, and a short ID has no
+     * digits past its ninth. */
+    static boolean isPackedBlob(long[] from, int at) {
+        long last = from[at + 2];
+        if ((last & ~(SHORT | 0xffffffffL)) != 1L << 32) {
+            return false;
+        }
+        return (last & SHORT) == 0
+            || (from[at] & SHORT_TAIL) == 0 && from[at + 1] == 0 && (int) last == 0;
+    }
+
+    /** Returns whether A and B, ID's of the same kind, name the same
+     * object: they are equal, or one is short and begins the other. Only
+     * blob ID's hash the same input in both lengths, so only they match
+     * across lengths. */
+    static boolean same(String a, String b) {
+        if (a == null || b == null) {
+            return a == b;
+        } else if (a.length() == b.length()) {
+            return a.equals(b);
+        } else if (a.length() == SHORT_DIGITS + 1) {
+            return b.startsWith(a);
+        } else {
+            return b.length() == SHORT_DIGITS + 1 && a.startsWith(b);
+        }
+    }
+
+    /** Returns the slot in a table of 2 to the BITS slots where the ID
+     * packed in KEY at AT belongs. */
+    static int slot(long[] key, int at, int bits) {
+        long h = (key[at] * 0x9e3779b97f4a7c15L) ^ (key[at + 1] * 0xc2b2ae3d27d4eb4fL)
+            ^ key[at + 2];
+        return (int) ((h * 0x9e3779b97f4a7c15L) >>> (64 - bits));
+    }
+
+    /** Returns the slot of TABLE, an open-addressing table of 2 to the
+     * BITS packed ID's with linear probing, holding the ID packed in KEY
+     * at AT, or else the empty slot where it belongs. */
+    static int find(long[] table, int bits, long[] key, int at) {
+        long k0 = key[at], k1 = key[at + 1], k2 = key[at + 2];
+        int mask = (1 << bits) - 1;
+        int i = slot(key, at, bits);
+        for (; table[WORDS * i + 2] != 0; i = (i + 1) & mask) {
+            int s = WORDS * i;
+            if (table[s] == k0 && table[s + 1] == k1 && table[s + 2] == k2) {
+                break;
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,137 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/** Runs object copies concurrently, with at most a fixed number in
+ * flight. Submitting blocks while the limit is reached, so a fast
+ * producer cannot queue up unbounded work. Failures are collected and
+ * reported together once every copy has finished.
+ * @author Jake Clayton */
+class ObjectTransfer implements AutoCloseable {
+
+    /** Environment variable overriding the in-flight limit. */
+    static final String LIMIT_VARIABLE = "GITLET_TRANSFER_LIMIT";
+
+    /** In-flight limit used when LIMIT_VARIABLE is unset. */
+    static final int DEFAULT_LIMIT = 32;
+
+    /** A transfer allowing the configured number of copies in flight. */
+    ObjectTransfer() {
+        this(configuredLimit());
+    }
+
+    /** A transfer allowing LIMIT copies in flight. */
+    ObjectTransfer(int limit) {
+        _permits = new Semaphore(limit);
+        _limit = limit;
+        _executor = newExecutor(limit);
+    }
+
+    /** Returns the in-flight limit from the environment, or DEFAULT_LIMIT. */
+    static int configuredLimit() {
+        String value = System.getenv(LIMIT_VARIABLE);
+        if (value != null) {
+            try {
+                int limit = Integer.parseInt(value.trim());
+                if (limit > 0) {
+                    return limit;
+                }
+            } catch (NumberFormatException e) {
+                /* Fall through to the default. */
+            }
+        }
+        return DEFAULT_LIMIT;
+    }
+
+    /** Runs COPY, which transfers the object with the given ID, once
+     * fewer than the limit are in flight. */
+    void submit(String id, Runnable copy) {
+        try {
+            _permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(id, e);
+            return;
+        }
+        _executor.execute(() -> {
+            try {
+                copy.run();
+            } catch (RuntimeException e) {
+                fail(id, e);
+            } finally {
+                _permits.release();
+            }
+        });
+    }
+
+    /** Waits for every submitted copy to finish, then reports all failures
+     * as a single error. Objects that did land are left in place. */
+    void await() {
+        try {
+            _permits.acquire(_limit);
+            _permits.release(_limit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitletException("Interrupted while transferring objects.", e);
+        }
+        synchronized (_failures) {
+            if (!_failures.isEmpty()) {
+                StringBuilder msg = new StringBuilder();
+                msg.append("Failed to transfer ").append(_failures.size()).append(" object(s):");
+                for (String failure : _failures) {
+                    msg.append(System.lineSeparator()).append("  ").append(failure);
+                }
+                throw new GitletException(msg.toString());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        _executor.shutdown();
+        try {
+            _executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Records that the copy of object ID failed with E. */
+    private void fail(String id, Exception e) {
+        synchronized (_failures) {
+            _failures.add(id + ": " + e.getMessage());
+        }
+    }
+
+    /** Returns an executor running each task on its own virtual thread
+     * where the runtime supports them, otherwise a pool of LIMIT threads. */
+    private static ExecutorService newExecutor(int limit) {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(limit, r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /** Bounds the number of copies in flight. */
+    private final Semaphore _permits;
+
+    /** The number of permits in _permits. */
+    private final int _limit;
+
+    /** Runs the copies. */
+    private final ExecutorService _executor;
+
+    /** Descriptions of the copies that failed. */
+    private final List<String> _failures = new ArrayList<>();
+}
@@ -0,0 +1,202 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/** Works out which commits and blobs one repository must send another.
+ * Shared by every Transport and by the Server.
+ * @author Jake Clayton */
+class Pack {
+
+    /** Returns whether the commit with ID ANCESTOR is reachable from the
+     * commit with ID FROM in HISTORY, following both parents. The walk
+     * stops at any commit with a bitmap in BITMAPS, consulting the bitmap
+     * instead. */
+    static boolean isAncestor(String ancestor, String from,
+                              Map<String, Commit> history, Bitmaps bitmaps) {
+        IdSet seen = new IdSet();
+        ArrayDeque<String> frontier = new ArrayDeque<>();
+        frontier.push(from);
+        while (!frontier.isEmpty()) {
+            String id = frontier.pop();
+            if (id.equals(ancestor)) {
+                return true;
+            }
+            Commit c = history.get(id);
+            if (c == null || !seen.add(id)) {
+                continue;
+            }
+            BitSet reach = bitmaps.bitmap(id);
+            if (reach != null) {
+                if (bitmaps.contains(reach, ancestor)) {
+                    return true;
+                }
+                continue;
+            }
+            pushParents(c, frontier);
+        }
+        return false;
+    }
+
+    /** Returns the commits reachable from HEAD in HISTORY that are not
+     * reachable from any of HAVE, as for the general form. */
+    static List<Commit> missingCommits(String head, Map<String, Commit> history,
+                                       Collection<String> have, Bitmaps bitmaps) {
+        return missingCommits(List.of(head), history, have, bitmaps);
+    }
+
+    /** Returns the commits reachable from any of HEADS in HISTORY that
+     * are not reachable from any of HAVE, ordered so that every commit
+     * comes after all of its parents. Any prefix of the result is
+     * therefore closed under taking parents. What HAVE reaches is found
+     * as a bitmap using BITMAPS, and the walk from HEADS stops at any
+     * commit in it. */
+    static List<Commit> missingCommits(Collection<String> heads, Map<String, Commit> history,
+                                       Collection<String> have, Bitmaps bitmaps) {
+        BitSet known = bitmaps.reach(have, history);
+        ArrayList<Commit> result = new ArrayList<>();
+        IdSet seen = new IdSet();
+        ArrayDeque<String> frontier = new ArrayDeque<>();
+        ArrayDeque<Boolean> expanded = new ArrayDeque<>();
+        ArrayList<String> starts = new ArrayList<>(heads);
+        Collections.reverse(starts);
+        for (String head : starts) {
+            frontier.push(head);
+            expanded.push(false);
+        }
+        while (!frontier.isEmpty()) {
+            String id = frontier.pop();
+            if (expanded.pop()) {
+                result.add(history.get(id));
+                continue;
+            }
+            Commit c = history.get(id);
+            if (c == null || bitmaps.contains(known, id) || !seen.add(id)) {
+                continue;
+            }
+            frontier.push(id);
+            expanded.push(true);
+            for (String parent : new String[] {c.getParent2(), c.getParent()}) {
+                if (parent != null) {
+                    frontier.push(parent);
+                    expanded.push(false);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns a test of whether a receiver holding the commits HAVE, and
+     * everything behind them in HISTORY short of its SHALLOW boundary,
+     * holds a commit. With no boundary this is a bitmap from BITMAPS;
+     * otherwise the walk must stop at the boundary, which bitmaps built
+     * over the full history cannot do. */
+    static Predicate<String> held(Map<String, Commit> history, Collection<String> have,
+                                  Set<String> shallow, Bitmaps bitmaps) {
+        if (shallow.isEmpty()) {
+            BitSet known = bitmaps.reach(have, history);
+            return id -> bitmaps.contains(known, id);
+        }
+        IdSet known = new IdSet();
+        ArrayDeque<String> frontier = new ArrayDeque<>(have);
+        while (!frontier.isEmpty()) {
+            String id = frontier.pop();
+            Commit c = history.get(id);
+            if (c != null && known.add(id) && !shallow.contains(id)) {
+                pushParents(c, frontier);
+            }
+        }
+        return known::contains;
+    }
+
+    /** Returns the commits within DEPTH generations of HEAD in HISTORY,
+     * or at any distance if DEPTH is 0, that HELD says the receiver
+     * lacks, ordered so that every commit comes after all of its parents
+     * among them. A receiver with no SHALLOW boundary holds everything
+     * behind a held commit, so the walk stops there; otherwise it goes on
+     * through held commits, so that a deeper fetch fills in what lies
+     * behind the boundary. */
+    static List<Commit> missingCommits(String head, Map<String, Commit> history,
+                                       Predicate<String> held, Set<String> shallow,
+                                       int depth) {
+        CommitIndex within = new CommitIndex();
+        IdSet seen = new IdSet();
+        seen.add(head);
+        ArrayList<String> generation = new ArrayList<>(List.of(head));
+        for (int d = 0; !generation.isEmpty() && (depth == 0 || d < depth); d += 1) {
+            ArrayList<String> next = new ArrayList<>();
+            for (String id : generation) {
+                Commit c = history.get(id);
+                if (c == null) {
+                    continue;
+                } else if (!held.test(id)) {
+                    within.put(id, c);
+                } else if (shallow.isEmpty()) {
+                    continue;
+                }
+                for (String parent : new String[] {c.getParent(), c.getParent2()}) {
+                    if (parent != null && seen.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+            }
+            generation = next;
+        }
+        return missingCommits(within.keySet(), within, List.of(), new Bitmaps());
+    }
+
+    /** Returns the blob ID's referenced by COMMITS, leaving out any blob
+     * already held by a parent outside COMMITS, since the receiving side
+     * has those parents and so has their blobs. */
+    static Set<String> missingBlobs(List<Commit> commits, Map<String, Commit> history) {
+        return missingBlobs(commits, history, id -> true);
+    }
+
+    /** Returns the blob ID's referenced by COMMITS, leaving out any blob
+     * held by a parent outside COMMITS that HELD says the receiving side
+     * has. */
+    static Set<String> missingBlobs(List<Commit> commits, Map<String, Commit> history,
+                                    Predicate<String> held) {
+        HashSet<String> sending = new HashSet<>();
+        for (Commit c : commits) {
+            sending.add(c.get_hashCode());
+        }
+        HashSet<String> present = new HashSet<>();
+        for (Commit c : commits) {
+            for (String parent : new String[] {c.getParent(), c.getParent2()}) {
+                if (parent != null && !sending.contains(parent) && history.containsKey(parent)
+                    && held.test(parent)) {
+                    present.addAll(history.get(parent).contents().values());
+                }
+            }
+        }
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        for (Commit c : commits) {
+            for (String id : c.contents().values()) {
+                if (!present.contains(id)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Adds the parents of C to FRONTIER. */
+    private static void pushParents(Commit c, ArrayDeque<String> frontier) {
+        if (c.getParent() != null) {
+            frontier.push(c.getParent());
+        }
+        if (c.getParent2() != null) {
+            frontier.push(c.getParent2());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The remote of a partial clone, which promises the blobs the clone
+ * was made without. Its name is kept in the file "promisor"; fetches
+ * from it transfer commits only. When a command is about to need the
+ * contents of files it has not got, they are fetched from the promisor
+ * in one batch, checked against their ID's, and stored like any other
+ * blob, so each is transferred at most once.
+ * @author Jake Clayton */
+class Promisor {
+
+    /** Name of the promisor file inside a .gitlet directory. */
+    static final String FILE = "promisor";
+
+    /** The promisor of REPO. */
+    Promisor(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+    }
+
+    /** Returns the name of the promisor remote of the .gitlet directory
+     * GITLET, or null if its history has every blob. */
+    static String remote(File gitlet) {
+        File file = Utils.join(gitlet, FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        return Utils.readContentsAsString(file).trim();
+    }
+
+    /** Makes the remote NAME the promisor. The caller must hold the
+     * writer lock. */
+    void mark(String name) {
+        _repo.journal().write(Utils.join(_gitlet, FILE),
+                              (name + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Makes sure every blob in TREES, maps of file names to blob ID's
+     * as in a commit, is present, fetching those that are not from the
+     * promisor in one batch. Does nothing in a repository with no
+     * promisor. The caller must hold the writer lock. */
+    @SafeVarargs
+    final void ensure(Map<String, String>... trees) {
+        HashMap<String, String> names = new HashMap<>();
+        for (Map<String, String> files : trees) {
+            for (Map.Entry<String, String> e : files.entrySet()) {
+                if (!Utils.join(_gitlet, e.getValue()).exists()) {
+                    names.put(e.getValue(), e.getKey());
+                }
+            }
+        }
+        String remote = remote(_gitlet);
+        if (names.isEmpty() || remote == null) {
+            return;
+        }
+        Trace.run("promisor.fetch", () -> {
+            try (Transport transport = _repo.remotes().connect(remote)) {
+                transport.fetchBlobs(names.keySet(), (id, stored) -> store(id, names, stored));
+            }
+        });
+        int missing = 0;
+        for (String id : names.keySet()) {
+            if (!Utils.join(_gitlet, id).exists()) {
+                missing += 1;
+            }
+        }
+        if (missing > 0) {
+            throw new NotFoundException("The remote " + remote + " could not supply "
+                + missing + " object(s).");
+        }
+    }
+
+    /** Checks that STORED, the serialized form of a blob, hashes to ID
+     * under its file name in NAMES, and stores it. */
+    private void store(String id, Map<String, String> names, byte[] stored) {
+        String name = names.get(id);
+        Blob blob = Protocol.blob(stored);
+        if (name == null || blob == null || !blob.matches(id, name)) {
+            throw new RejectedException("Received corrupt blob " + id + ".");
+        }
+        _repo.journal().write(Utils.join(_gitlet, id), stored);
+    }
+
+    /** The repository whose blobs are promised. */
+    private final Repository _repo;
+
+    /** Its .gitlet directory. */
+    private final File _gitlet;
+}
@@ -0,0 +1,338 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The wire format spoken between a SocketTransport and a Server. Every
+ * message is a frame: a one-byte type, a four-byte big-endian payload
+ * length, then the payload. A request is answered by a stream of frames
+ * without further round trips, so a transfer costs one or two round trips
+ * regardless of how many objects it carries.
+ * @author Jake Clayton */
+class Protocol {
+
+    /** Prefix of remote locations served over TCP. */
+    static final String SCHEME = "gitlet://";
+
+    /** Port used when a TCP address does not name one. */
+    static final int DEFAULT_PORT = 9417;
+
+    /** Asks for the branch information. Empty payload. */
+    static final byte LIST_REFS = 1;
+    /** Branch information, as alternating keys and values. */
+    static final byte REFS = 2;
+    /** Asks for a branch: its name followed by the commit ID's already held. */
+    static final byte FETCH = 3;
+    /** The commit ID of the fetched branch, empty if there is none. */
+    static final byte HEAD = 4;
+    /** A serialized Commit. */
+    static final byte COMMIT = 5;
+    /** A blob: a length-prefixed ID, then the stored object bytes. */
+    static final byte BLOB = 6;
+    /** Ends a stream of commits and blobs. Empty payload. */
+    static final byte DONE = 7;
+    /** Starts a push: the branch, the expected old head or "", the new
+     * head. The new commits follow, parents first, then the blobs they
+     * need, then DONE. */
+    static final byte PUSH = 8;
+    /** A push was applied. Empty payload. */
+    static final byte OK = 9;
+    /** A request failed; the payload is the message. */
+    static final byte ERROR = 10;
+    /** Asks for a branch to a depth: the branch, the depth (0 for all of
+     * it), the number of shallow commits the client has, those commits,
+     * then the commit ID's already held. */
+    static final byte FETCH_SHALLOW = 11;
+    /** As FETCH_SHALLOW, but asks for commits only, without blobs. */
+    static final byte FETCH_FILTERED = 12;
+    /** Asks for blobs by ID. Answered by a BLOB frame for each one the
+     * server holds, then DONE. */
+    static final byte GET_BLOBS = 13;
+
+    /** What the objects in COMMIT and BLOB frames may be made of: a
+     * commit, its Tree of files (a HashMap from an older peer) and its
+     * strings, or a blob and its bytes, nested no deeper than those are.
+     * Anything else is refused before it is constructed. */
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+        "gitlet.Commit;gitlet.Tree;gitlet.Blob;java.util.HashMap;java.util.Map$Entry;"
+        + "java.lang.String;maxdepth=4;!*");
+
+    /** Size of the read and write buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Length of a frame header. */
+    private static final int HEADER = 5;
+
+    /** Largest payload a frame may carry. A blob travels in one frame, so
+     * this bounds the files a transfer can carry; it also bounds what a
+     * peer's stated length can make a Reader allocate. */
+    static final int MAX_PAYLOAD = 1 << 30;
+
+    /** Returns the socket address named by ADDRESS, which is either
+     * unix:PATH, HOST:PORT, HOST, or PORT. */
+    static SocketAddress address(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        try {
+            if (colon >= 0) {
+                return new InetSocketAddress(address.substring(0, colon),
+                        Integer.parseInt(address.substring(colon + 1)));
+            } else if (!address.isEmpty() && address.chars().allMatch(Character::isDigit)) {
+                return new InetSocketAddress("localhost", Integer.parseInt(address));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad port in " + address);
+        }
+        return new InetSocketAddress(address.isEmpty() ? "localhost" : address, DEFAULT_PORT);
+    }
+
+    /** Returns VALS joined into one newline-separated payload. */
+    static byte[] strings(Collection<String> vals) {
+        return String.join("\n", vals).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns VALS joined into one newline-separated payload. */
+    static byte[] strings(String... vals) {
+        return strings(List.of(vals));
+    }
+
+    /** Returns the strings in a newline-separated PAYLOAD. */
+    static List<String> strings(byte[] payload) {
+        ArrayList<String> result = new ArrayList<>();
+        if (payload.length == 0) {
+            return result;
+        }
+        for (String s : new String(payload, StandardCharsets.UTF_8).split("\n", -1)) {
+            result.add(s);
+        }
+        return result;
+    }
+
+    /** Returns MAP as alternating keys and values. */
+    static byte[] map(Map<String, String> map) {
+        ArrayList<String> vals = new ArrayList<>();
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            vals.add(e.getKey());
+            vals.add(e.getValue());
+        }
+        return strings(vals);
+    }
+
+    /** Returns the map encoded in PAYLOAD by map(). */
+    static HashMap<String, String> map(byte[] payload) {
+        List<String> vals = strings(payload);
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i + 1 < vals.size(); i += 2) {
+            result.put(vals.get(i), vals.get(i + 1));
+        }
+        return result;
+    }
+
+    /** Returns the length prefix that goes before the object bytes of a
+     * BLOB frame for blob ID. */
+    static byte[] blobHeader(String id) {
+        byte[] name = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(2 + name.length);
+        buf.putShort((short) name.length).put(name);
+        return buf.array();
+    }
+
+    /** Returns the ID of the BLOB frame PAYLOAD, or null unless PAYLOAD
+     * is long enough for the ID its prefix claims and that is a blob ID. */
+    static String blobId(byte[] payload) {
+        if (payload.length < 2) {
+            return null;
+        }
+        int len = ByteBuffer.wrap(payload).getShort() & 0xffff;
+        if (2 + len > payload.length) {
+            return null;
+        }
+        String id = new String(payload, 2, len, StandardCharsets.UTF_8);
+        return ObjectIds.BLOB.matcher(id).matches() ? id : null;
+    }
+
+    /** Returns the stored object bytes of the BLOB frame PAYLOAD, whose
+     * ID blobId() has accepted. */
+    static byte[] blobContents(byte[] payload) {
+        if (blobId(payload) == null) {
+            throw new IllegalArgumentException("malformed blob frame");
+        }
+        int start = 2 + (ByteBuffer.wrap(payload).getShort() & 0xffff);
+        byte[] result = new byte[payload.length - start];
+        System.arraycopy(payload, start, result, 0, result.length);
+        return result;
+    }
+
+    /** Returns the commit serialized in PAYLOAD, a COMMIT frame's, or
+     * null unless it is a well-formed commit. */
+    static Commit commit(byte[] payload) {
+        Object result = read(payload);
+        if (result instanceof Commit && ((Commit) result).isWellFormed()) {
+            return (Commit) result;
+        }
+        return null;
+    }
+
+    /** Returns the blob serialized in STORED, the object bytes of a BLOB
+     * frame or of a blob file received from another repository, or null
+     * if it is not a blob. */
+    static Blob blob(byte[] stored) {
+        Object result = read(stored);
+        return result instanceof Blob ? (Blob) result : null;
+    }
+
+    /** Returns the object serialized in BYTES, deserialized through
+     * FILTER, or null if it cannot be. */
+    private static Object read(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            in.setObjectInputFilter(FILTER);
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** A single message. */
+    static class Frame {
+        /** Creates a frame of the given TYPE and PAYLOAD. */
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /** One of the frame type constants. */
+        final byte type;
+
+        /** The frame body. */
+        final byte[] payload;
+    }
+
+    /** Buffers outgoing frames so that many small frames share one write. */
+    static class Writer {
+        /** A writer onto CHANNEL. */
+        Writer(WritableByteChannel channel) {
+            _channel = channel;
+        }
+
+        /** Queues a frame of TYPE whose payload is the concatenation of
+         * PARTS, sending buffered frames first if it does not fit. */
+        void write(byte type, byte[]... parts) throws IOException {
+            long len = 0;
+            for (byte[] part : parts) {
+                len += part.length;
+            }
+            if (len > MAX_PAYLOAD) {
+                throw new IOException("frame of " + len + " bytes is too large to send");
+            }
+            if (_buf.remaining() < HEADER + len) {
+                flush();
+            }
+            _buf.put(type).putInt((int) len);
+            for (byte[] part : parts) {
+                if (_buf.remaining() >= part.length) {
+                    _buf.put(part);
+                } else {
+                    flush();
+                    drain(ByteBuffer.wrap(part));
+                }
+            }
+        }
+
+        /** Sends everything queued so far. */
+        void flush() throws IOException {
+            _buf.flip();
+            drain(_buf);
+            _buf.clear();
+        }
+
+        /** Writes all of BUF to the channel. */
+        private void drain(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                _channel.write(buf);
+            }
+        }
+
+        /** Destination of the frames. */
+        private final WritableByteChannel _channel;
+
+        /** Frames not yet sent. */
+        private final ByteBuffer _buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /** Reads frames from a channel through a single buffer. */
+    static class Reader {
+        /** A reader from CHANNEL. */
+        Reader(ReadableByteChannel channel) {
+            _channel = channel;
+            _buf.flip();
+        }
+
+        /** Returns the next frame, or null if the channel was closed
+         * between frames. */
+        Frame read() throws IOException {
+            if (!fill(HEADER, true)) {
+                return null;
+            }
+            byte type = _buf.get();
+            int len = _buf.getInt();
+            if (len < 0 || len > MAX_PAYLOAD) {
+                throw new IOException("bad frame length " + len);
+            }
+            byte[] payload = new byte[len];
+            int copied = Math.min(len, _buf.remaining());
+            _buf.get(payload, 0, copied);
+            ByteBuffer rest = ByteBuffer.wrap(payload, copied, len - copied);
+            while (rest.hasRemaining()) {
+                if (_channel.read(rest) < 0) {
+                    throw new EOFException("connection closed mid-frame");
+                }
+            }
+            return new Frame(type, payload);
+        }
+
+        /** Reads until at least N bytes are buffered. Returns false if
+         * the channel ends before any of them arrive and EOFOK. */
+        private boolean fill(int n, boolean eofOk) throws IOException {
+            if (_buf.remaining() >= n) {
+                return true;
+            }
+            _buf.compact();
+            try {
+                while (_buf.position() < n) {
+                    if (_channel.read(_buf) < 0) {
+                        if (eofOk && _buf.position() == 0) {
+                            return false;
+                        }
+                        throw new EOFException("connection closed mid-frame");
+                    }
+                }
+            } finally {
+                _buf.flip();
+            }
+            return true;
+        }
+
+        /** Source of the frames. */
+        private final ReadableByteChannel _channel;
+
+        /** Bytes read but not yet consumed, in read mode. */
+        private final ByteBuffer _buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+}
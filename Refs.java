@@ -0,0 +1,293 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The branches of a repository. Each branch is a small file under
+ * refs/heads holding its commit ID, and the file HEAD names the active
+ * branch. Branches that rarely change can be folded into the single
+ * packed-refs file, one "ID NAME" line each; a loose file overrides a
+ * packed entry of the same name. Every change is a compare-and-swap made
+ * under the repository's writer lock, recorded in the Journal and
+ * published by an atomic rename, so readers need no lock.
+ * @author Jake Clayton */
+class Refs {
+
+    /** The refs of the repository whose .gitlet directory is GITLET. */
+    Refs(File gitlet) {
+        _gitlet = gitlet;
+        _heads = Utils.join(gitlet, "refs", "heads");
+        _headFile = Utils.join(gitlet, "HEAD");
+        _packedFile = Utils.join(gitlet, "packed-refs");
+        _journal = Journal.of(gitlet);
+    }
+
+    /** Creates the refs of a new repository whose only branch, BRANCH,
+     * is active and points at commit ID. */
+    void initialize(String branch, String id) {
+        _heads.mkdirs();
+        _journal.write(_headFile, bytes(branch));
+        writeLoose(branch, id);
+    }
+
+    /** Converts a repository that still keeps its branches in the old
+     * serialized info map. Does nothing for one that has been converted. */
+    @SuppressWarnings({"unchecked", "try"})
+    static void migrate(File gitlet) {
+        File info = Utils.join(gitlet, "info");
+        if (!info.exists()) {
+            return;
+        }
+        try (RepositoryLock lock = RepositoryLock.acquire(gitlet)) {
+            if (!info.exists()) {
+                return;
+            }
+            HashMap<String, String> map = Utils.readObject(info, HashMap.class);
+            Refs refs = new Refs(gitlet);
+            refs.initialize(map.get("Active Branch"), map.get("Active Head"));
+            for (Map.Entry<String, String> e : map.entrySet()) {
+                if (!e.getKey().equals("Active Branch") && !e.getKey().equals("Active Head")) {
+                    refs.writeLoose(e.getKey(), e.getValue());
+                }
+            }
+            info.delete();
+        }
+    }
+
+    /** Checks that BRANCH may name a branch: it must be made of
+     * non-empty components separated by "/", none of them "." or "..",
+     * and hold no control characters, so that its loose file lies
+     * inside refs/heads. */
+    static void checkName(String branch) {
+        if (!isName(branch)) {
+            throw new GitletException("Invalid branch name: " + branch);
+        }
+    }
+
+    /** Returns whether BRANCH passes checkName. */
+    private static boolean isName(String branch) {
+        if (branch == null || branch.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < branch.length(); i += 1) {
+            if (Character.isISOControl(branch.charAt(i))) {
+                return false;
+            }
+        }
+        for (String part : branch.split("/", -1)) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the name of the active branch. */
+    String activeBranch() {
+        return Utils.readContentsAsString(_headFile).trim();
+    }
+
+    /** Returns the commit ID of the active branch. */
+    String head() {
+        return get(activeBranch());
+    }
+
+    /** Returns the commit ID BRANCH points to, or null if there is no
+     * such branch, as there is none with an invalid name. */
+    String get(String branch) {
+        if (!isName(branch)) {
+            return null;
+        }
+        File file = loose(branch);
+        if (file.isFile()) {
+            return Utils.readContentsAsString(file).trim();
+        }
+        return packed().get(branch);
+    }
+
+    /** Returns every branch and its commit ID, sorted by name. */
+    TreeMap<String, String> branches() {
+        TreeMap<String, String> result = new TreeMap<>(packed());
+        collectLoose(_heads, "", result);
+        return result;
+    }
+
+    /** Makes BRANCH the active branch. */
+    @SuppressWarnings("try")
+    void setActive(String branch) {
+        checkName(branch);
+        try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+            _journal.write(_headFile, bytes(branch));
+        }
+    }
+
+    /** Points BRANCH at commit ID, creating it if need be. */
+    @SuppressWarnings("try")
+    void set(String branch, String id) {
+        checkName(branch);
+        try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+            writeLoose(branch, id);
+        }
+    }
+
+    /** Points BRANCH at commit ID if it currently points at EXPECTED, where
+     * a null EXPECTED means the branch must not exist yet. Returns whether
+     * the branch was moved. */
+    @SuppressWarnings("try")
+    boolean compareAndSet(String branch, String expected, String id) {
+        checkName(branch);
+        try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+            String current = get(branch);
+            if (expected == null ? current != null : !expected.equals(current)) {
+                return false;
+            }
+            writeLoose(branch, id);
+            return true;
+        }
+    }
+
+    /** Removes BRANCH, whether loose or packed. */
+    @SuppressWarnings("try")
+    void delete(String branch) {
+        checkName(branch);
+        try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+            deleteLoose(branch);
+            TreeMap<String, String> packed = packed();
+            if (packed.remove(branch) != null) {
+                writePacked(packed);
+            }
+        }
+    }
+
+    /** Moves every loose branch into packed-refs. */
+    @SuppressWarnings("try")
+    void pack() {
+        try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+            TreeMap<String, String> loose = new TreeMap<>();
+            collectLoose(_heads, "", loose);
+            if (loose.isEmpty()) {
+                return;
+            }
+            for (String branch : loose.keySet()) {
+                checkName(branch);
+            }
+            TreeMap<String, String> packed = packed();
+            packed.putAll(loose);
+            writePacked(packed);
+            for (String branch : loose.keySet()) {
+                deleteLoose(branch);
+            }
+        }
+    }
+
+    /** Returns the loose file for BRANCH. */
+    private File loose(String branch) {
+        return Utils.join(_heads, branch);
+    }
+
+    /** Writes commit ID to the loose file for BRANCH. */
+    private void writeLoose(String branch, String id) {
+        File file = loose(branch);
+        file.getParentFile().mkdirs();
+        _journal.write(file, bytes(id));
+    }
+
+    /** Removes the loose file for BRANCH, and any directories that held
+     * only it. */
+    private void deleteLoose(String branch) {
+        File file = loose(branch);
+        _journal.delete(file);
+        for (File dir = file.getParentFile(); !dir.equals(_heads); dir = dir.getParentFile()) {
+            if (!dir.delete()) {
+                break;
+            }
+        }
+    }
+
+    /** Adds the loose branches under DIR, whose names start with PREFIX,
+     * to RESULT. */
+    private void collectLoose(File dir, String prefix, Map<String, String> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.getName().startsWith(".")) {
+                continue;
+            } else if (f.isDirectory()) {
+                collectLoose(f, prefix + f.getName() + "/", result);
+            } else {
+                result.put(prefix + f.getName(), Utils.readContentsAsString(f).trim());
+            }
+        }
+    }
+
+    /** Returns the branches in packed-refs, re-reading the file only when
+     * it has changed since the last call. */
+    private synchronized TreeMap<String, String> packed() {
+        Object stamp = null;
+        try {
+            stamp = Files.readAttributes(_packedFile.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            /* No packed-refs file. */
+        }
+        if (_packed == null || stamp == null || !stamp.equals(_packedStamp)) {
+            TreeMap<String, String> result = new TreeMap<>();
+            if (_packedFile.isFile()) {
+                for (String line : Utils.readContentsAsString(_packedFile).split("\n")) {
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        result.put(line.substring(space + 1), line.substring(0, space));
+                    }
+                }
+            }
+            _packed = result;
+            _packedStamp = stamp;
+        }
+        return new TreeMap<>(_packed);
+    }
+
+    /** Replaces packed-refs with PACKED. */
+    private void writePacked(Map<String, String> packed) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> e : packed.entrySet()) {
+            lines.add(e.getValue() + " " + e.getKey() + "\n");
+        }
+        _journal.write(_packedFile, bytes(String.join("", lines)));
+    }
+
+    /** Returns the UTF-8 encoding of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The .gitlet directory. */
+    private final File _gitlet;
+
+    /** Directory of loose branch files. */
+    private final File _heads;
+
+    /** File naming the active branch. */
+    private final File _headFile;
+
+    /** File of packed branches. */
+    private final File _packedFile;
+
+    /** The journal every change is recorded in. */
+    private final Journal _journal;
+
+    /** Last parse of _packedFile. */
+    private TreeMap<String, String> _packed;
+
+    /** Identity of the _packedFile that _packed was parsed from. Every
+     * rewrite renames a new file into place, so this changes with it. */
+    private Object _packedStamp;
+}
@@ -0,0 +1,17 @@
+package gitlet;
+
+/** A GitletException for an operation refused because of the state of
+ * the repository rather than its arguments: uncommitted or untracked
+ * files in the way, a branch that moved concurrently, or a push that is
+ * not a fast-forward. Retrying after the state changes may succeed.
+ * @author Jake Clayton */
+public class RejectedException extends GitletException {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** A RejectedException with MSG as its message. */
+    public RejectedException(String msg) {
+        super(msg);
+    }
+}
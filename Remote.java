@@ -1,209 +1,155 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /** Enables remote capabilities for gitlet.
  * @author Jake Clayton*/
 public class Remote {
 
-    /** The command working directory. */
-    static final File CWD = new File(System.getProperty("user.dir"));
-
-    /** The .gitlet directory for all persistence. */
-    static final File GITLET_FOLDER = Utils.join(CWD, ".gitlet");
-
-    /** The file containing remote login info. */
-    static final File REMOTE = Utils.join(GITLET_FOLDER, "remotelogins");
+    /** The remotes of REPO. */
+    Remote(Repository repo) {
+        _repo = repo;
+        _gitlet = repo.gitletDir();
+        _remote = Utils.join(_gitlet, "remotelogins");
+    }
 
     /** Initializes appropriate persistence. */
-    public static void initialize() {
-        if (!REMOTE.exists()) {
-            try {
-                REMOTE.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    public void initialize() {
         _loginInfo = new HashMap<String, String>();
         save();
     }
 
     /** Saves login information. */
-    private static void save() {
-        Utils.writeObject(REMOTE, _loginInfo);
+    private void save() {
+        Utils.writeObject(_remote, _loginInfo);
     }
 
     /** Retrieves saved login information properly. */
     @SuppressWarnings("unchecked")
-    private static void update() {
-        _loginInfo = Utils.readObject(REMOTE, HashMap.class);
+    private void update() {
+        _loginInfo = Utils.readObject(_remote, HashMap.class);
     }
 
-    /** Saves the given login information under the given remote name.
-     * @param args has the remote name and file path. */
-    public static void addRemote(String... args) {
+    /** Saves LOCATION, a file path or address, under the remote NAME. */
+    public void addRemote(String name, String location) {
         update();
-        if (_loginInfo.containsKey(args[1])) {
-            Main.error("A remote with that name already exists.");
+        if (_loginInfo.containsKey(name)) {
+            throw new GitletException("A remote with that name already exists.");
         }
-        String path = args[2];
-        path.replace("/", File.separator);
-        _loginInfo.put(args[1], args[2]);
+        _loginInfo.put(name, location);
         save();
     }
 
-    /** Remove information associated with the given remote name.
-     * @param args has the remote name to be removed. */
-    public static void rmRemote(String... args) {
+    /** Remove information associated with the remote NAME. */
+    public void rmRemote(String name) {
         update();
-        if (!_loginInfo.containsKey(args[1])) {
-            Main.error("A remote with that name does not exist.");
+        if (!_loginInfo.containsKey(name)) {
+            throw new NotFoundException("A remote with that name does not exist.");
         }
-        _loginInfo.remove(args[1]);
+        _loginInfo.remove(name);
         save();
     }
 
     /** Attempts to append the current branch's commits to the end
-     * of the given branch at the given remote.
-     * @param args args[1] is the remote name and args[2] is the branch. */
-    @SuppressWarnings("unchecked")
-    public static void push(String... args) {
-        update();
-        if (!_loginInfo.containsKey(args[1])) {
-            Main.error("Remote directory not found.");
-        }
-        File remoteGit = new File(_loginInfo.get(args[1]));
-        if (!remoteGit.exists()) {
-            Main.error("Remote directory not found.");
-        }
-        File r = Utils.join(remoteGit, "commit_history");
-        File i = Utils.join(remoteGit, "info");
-        File stagingInfo = Utils.join(remoteGit, "staging");
-        HashMap<String, Commit> rH = Utils.readObject(r, HashMap.class);
-        HashMap<String, String> rI = Utils.readObject(i, HashMap.class);
-        HashMap<String, Commit> localHistory = CommitTree.getHistory();
-        Commit lHead = CommitTree.getHead();
-        Commit rHead;
-        if (rI.containsKey(args[2])) {
-            rHead = rH.get(rI.get(args[2]));
-        } else {
-            rI.put(args[2], rI.get("Active Head"));
-            rHead = rH.get(rI.get("Active Head"));
-        }
-        boolean contains = false;
-        for (Commit c : localHistory.values()) {
-            if (c.getMessage().equals(rHead.getMessage())) {
-                contains = true;
+     * of BRANCH at the remote NAME. Only the commits and blobs
+     * the remote is missing are sent, and the remote branch head is
+     * moved only if it still points where it did when the push began. */
+    public void push(String name, String branch) {
+        try (Transport remote = connect(name)) {
+            CommitIndex localHistory = _repo.tree().getHistory();
+            Commit lHead = _repo.tree().getHead();
+            Map<String, String> rI = remote.refs();
+            Bitmaps bitmaps = Bitmaps.load(_gitlet);
+            String expected = rI.get(branch);
+            if (expected != null
+                && !Pack.isAncestor(expected, lHead.get_hashCode(), localHistory, bitmaps)) {
+                throw new RejectedException("Please pull down remote changes before pushing.");
+            }
+            List<Commit> missing =
+                Pack.missingCommits(lHead.get_hashCode(), localHistory, rI.values(), bitmaps);
+            String error = remote.push(branch, expected, lHead.get_hashCode(), missing,
+                    Pack.missingBlobs(missing, localHistory), _gitlet);
+            if (error != null) {
+                throw new RejectedException(error);
             }
         }
-        if (!contains) {
-            Main.error("Please pull down remote changes before pushing.");
-        }
-        Commit end = null;
-        Commit check = lHead;
-        while (true) {
-            if (rHead.getMessage().equals(check.getMessage())) {
-                end = check;
+    }
+
+    /** Brings down BRANCH from the remote NAME into the local repository
+     * as NAME/BRANCH. Only commits the local repository cannot already
+     * reach, and their blobs, are transferred; an interrupted fetch picks
+     * up from its last checkpoint. Unless DEPTH is 0, only the commits
+     * within DEPTH generations of the remote branch are fetched and the
+     * rest are cut off at the shallow boundary. Fetching from a shallow
+     * repository again with a greater DEPTH, or with none, fills in what
+     * lies behind the boundary. From the promisor of a partial clone,
+     * only commits are fetched. */
+    public void fetch(String name, String branch, int depth) {
+        try (Transport remote = connect(name)) {
+            boolean blobs = !name.equals(Promisor.remote(_gitlet));
+            FetchCheckpoint checkpoint = new FetchCheckpoint(_gitlet, name, branch, blobs);
+            HashSet<String> have = new HashSet<>(_repo.refs().branches().values());
+            have.addAll(checkpoint.commitIds());
+            Set<String> shallow = Shallow.load(_gitlet);
+            String rHead = remote.fetch(branch, have, shallow, depth, checkpoint);
+            if (rHead == null) {
+                throw new NotFoundException("That remote does not have that branch.");
             }
-            if (check.getParent() == null) {
-                break;
+            List<Commit> fetched = checkpoint.finish();
+            _repo.journal().addCommits(fetched);
+            if (depth > 0 || !shallow.isEmpty()) {
+                deepen(fetched);
             }
-            check = localHistory.get(check.getParent());
-        }
-        if (end == null) {
-            Main.error("Please pull down remote changes before pushing.");
-        }
-        File stagedAdd = Utils.join(stagingInfo, "addition");
-        for (File del : stagedAdd.listFiles()) {
-            del.delete();
-        }
-        File stagedRem = Utils.join(stagingInfo, "removal");
-        for (File del : stagedRem.listFiles()) {
-            del.delete();
+            _repo.staging().clear();
+            _repo.refs().set(name + "/" + branch, rHead);
+            checkpoint.delete();
         }
-        rI.put(rI.get("Active Branch"), rI.get("Active Head"));
-        rI.replace("Active Head", lHead.getSha1());
-        Utils.writeObject(r, localHistory);
-        Utils.writeObject(i, rI);
     }
 
-
-
-    /** Brings down commits from the remote Gitlet repository
-     * into the local Gitlet repository.
-     * @param args */
-    @SuppressWarnings("unchecked")
-    public static void fetch(String... args) {
-        update();
-        if (!_loginInfo.containsKey(args[1])) {
-            Main.error("Remote directory not found.");
-        }
-        File remoteGit = new File(_loginInfo.get(args[1]));
-        if (!remoteGit.exists()) {
-            Main.error("Remote directory not found.");
-        }
-        File rI = Utils.join(remoteGit, "info");
-        File cH = Utils.join(remoteGit, "commit_history");
-        File lInfo = Utils.join(GITLET_FOLDER, "info");
-        File lHistory = Utils.join(GITLET_FOLDER, "commit_history");
-        HashMap<String, String> localInfo = CommitTree.getInfo();
-        HashMap<String, Commit> localHistory = CommitTree.getHistory();
-        HashMap<String, String> bI = Utils.readObject(rI, HashMap.class);
-        HashMap<String, Commit> rH = Utils.readObject(cH, HashMap.class);
-        Commit rHead = null;
-        if (!bI.containsKey(args[2])) {
-            if (!bI.get("Active Branch").equals(args[2])) {
-                Main.error("That remote does not have that branch.");
-            } else {
-                rHead = rH.get(bI.get("Active Head"));
+    /** Moves the shallow boundary past the commits FETCHED. A bitmap of a
+     * commit that was on the boundary left out the ancestors that have
+     * now arrived, so if any commit left it the bitmaps are dropped, to
+     * be rebuilt by the next gc. */
+    private void deepen(List<Commit> fetched) {
+        CommitIndex history = _repo.journal().loadHistory();
+        if (Shallow.update(_gitlet, history, fetched, _repo.journal())) {
+            File bitmaps = Utils.join(_gitlet, Bitmaps.FILE);
+            if (bitmaps.exists()) {
+                _repo.journal().delete(bitmaps);
             }
-        } else {
-            rHead = rH.get(bI.get(args[2]));
         }
-        Commit temp = rHead;
-        while (true) {
-            boolean addd = true;
-            for (Commit c : localHistory.values()) {
-                if (c.getMessage().equals(temp.getMessage())) {
-                    addd = false;
-                }
-            }
-            if (addd) {
-                localHistory.put(temp.getSha1(), temp);
-            }
-            for (String sha1 : temp.contents().values()) {
-                File f = Utils.join(remoteGit, sha1);
-                Blob copyFrom = Utils.readObject(f, Blob.class);
-                File add = Utils.join(GITLET_FOLDER, sha1);
-                try {
-                    add.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                Utils.writeObject(add, copyFrom);
-            }
-            if (temp.getParent() == null) {
-                break;
-            }
-            temp = rH.get(temp.getParent());
+    }
+
+    /** Returns a Transport to the remote saved under NAME. */
+    Transport connect(String name) {
+        update();
+        if (!_loginInfo.containsKey(name)) {
+            throw new NotFoundException("Remote directory not found.");
         }
-        localInfo.put(args[1] + "/" + args[2], rHead.getSha1());
-        StagingArea.clear();
-        Utils.writeObject(lHistory, localHistory);
-        Utils.writeObject(lInfo, localInfo);
+        return Transport.open(_loginInfo.get(name));
     }
 
-    /** Fetches branch [remote name]/[remote branch name] as for the fetch
-     * command, and then merges that fetch into the current branch.
-     @param args the input arguments */
-    public static void pull(String... args) {
-        fetch("fetch", args[1], args[2]);
-        CommitTree.merge("merge", args[1] + "/" + args[2]);
+    /** Fetches BRANCH from the remote NAME as for fetch, and then merges
+     * NAME/BRANCH into the current branch. */
+    public void pull(String name, String branch) {
+        fetch(name, branch, 0);
+        _repo.tree().merge(name + "/" + branch);
     }
 
+    /** The repository these are the remotes of. */
+    private final Repository _repo;
+
+    /** The .gitlet directory for all persistence. */
+    private final File _gitlet;
+
+    /** The file containing remote login info. */
+    private final File _remote;
+
     /** The saved remote login info. */
-    private static HashMap<String, String> _loginInfo;
+    private HashMap<String, String> _loginInfo;
 }
-
@@ -0,0 +1,424 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/** A Gitlet repository that can be embedded in another program. Every
+ * failure is reported by throwing a GitletException rather than by
+ * exiting, and output goes to a PrintStream of the caller's choosing,
+ * so any number of repositories may be open in one process.
+ * @author Jake Clayton */
+public class Repository {
+
+    /** Name of the remote a clone is made from. */
+    static final String ORIGIN = "origin";
+
+    /** A repository whose working tree is WORKTREE. */
+    private Repository(File workTree) {
+        _workTree = workTree;
+        _gitlet = Utils.join(workTree, ".gitlet");
+        _out = System.out;
+        _refs = new Refs(_gitlet);
+        _journal = Journal.of(_gitlet);
+        _tree = new CommitTree(this);
+        _staging = new StagingArea(this);
+        _remotes = new Remote(this);
+        _promisor = new Promisor(this);
+    }
+
+    /** Creates a new repository in the directory DIR and returns it. */
+    public static Repository init(File dir) {
+        return guard(() -> create(dir));
+    }
+
+    /** As init(DIR), but may fail with any exception. */
+    private static Repository create(File dir) {
+        Repository repo = new Repository(dir);
+        if (repo._gitlet.exists()) {
+            String m = "A Gitlet version-control system already exists";
+            m += " in the current directory.";
+            throw new GitletException(m);
+        }
+        repo._gitlet.mkdir();
+        repo._remotes.initialize();
+        repo._staging.initialize();
+        repo._tree.initCommit();
+        repo._journal.sync();
+        return repo;
+    }
+
+    /** Returns the existing repository in the directory DIR, first
+     * recovering anything an interrupted writer left behind. */
+    public static Repository open(File dir) {
+        return guard(() -> {
+            File gitlet = Utils.join(dir, ".gitlet");
+            if (!gitlet.exists()) {
+                throw new NotFoundException("Not in an initialized Gitlet directory.");
+            }
+            Refs.migrate(gitlet);
+            Repository repo = new Repository(dir);
+            repo._journal.recover();
+            return repo;
+        });
+    }
+
+    /** Creates a repository in the directory DIR holding the master
+     * branch of the repository at LOCATION, saved as the remote "origin",
+     * and checks it out. Only the last DEPTH commits are fetched unless
+     * DEPTH is 0. If the fetch fails, the new repository is removed. */
+    public static Repository clone(File dir, String location, int depth) {
+        return clone(dir, location, depth, true);
+    }
+
+    /** As clone(DIR, LOCATION, DEPTH), but unless BLOBS, makes a partial
+     * clone: only commits are fetched, and origin is made the promisor of
+     * the blobs, which are then fetched as they are needed. */
+    public static Repository clone(File dir, String location, int depth, boolean blobs) {
+        Repository repo = init(dir);
+        try {
+            repo.addRemote(ORIGIN, location);
+            repo.write("clone", () -> {
+                if (!blobs) {
+                    repo._promisor.mark(ORIGIN);
+                }
+                repo._remotes.fetch(ORIGIN, "master", depth);
+                repo._tree.reset(repo._refs.get(ORIGIN + "/master"));
+            });
+        } catch (GitletException e) {
+            repo._journal.close();
+            try (Stream<Path> files = Files.walk(repo._gitlet.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            } catch (IOException | UncheckedIOException io) {
+                e.addSuppressed(io);
+            }
+            throw e;
+        }
+        return repo;
+    }
+
+    /** Returns the working tree. */
+    public File workTree() {
+        return _workTree;
+    }
+
+    /** Returns the .gitlet directory. */
+    public File gitletDir() {
+        return _gitlet;
+    }
+
+    /** Returns where commands print their output. */
+    public PrintStream out() {
+        return _out;
+    }
+
+    /** Sends all further output to OUT. */
+    public void setOut(PrintStream out) {
+        _out = out;
+    }
+
+    /** Returns the branches. */
+    Refs refs() {
+        return _refs;
+    }
+
+    /** Returns the journal. */
+    Journal journal() {
+        return _journal;
+    }
+
+    /** Returns the commit tree. */
+    CommitTree tree() {
+        return _tree;
+    }
+
+    /** Returns the staging area. */
+    StagingArea staging() {
+        return _staging;
+    }
+
+    /** Returns the saved remotes. */
+    Remote remotes() {
+        return _remotes;
+    }
+
+    /** Returns the promisor of a partial clone. */
+    Promisor promisor() {
+        return _promisor;
+    }
+
+    /** Runs OPERATION, timed as the phase NAME, holding the writer lock,
+     * and makes whatever it wrote durable before returning. */
+    @SuppressWarnings("try")
+    private void write(String name, Runnable operation) {
+        guard(() -> {
+            try (RepositoryLock lock = RepositoryLock.acquire(_gitlet)) {
+                Trace.run(name, operation);
+            } finally {
+                _journal.sync();
+            }
+            return null;
+        });
+    }
+
+    /** Runs OPERATION, timed as the phase NAME, without the writer
+     * lock. */
+    private void read(String name, Runnable operation) {
+        guard(() -> {
+            Trace.run(name, operation);
+            return null;
+        });
+    }
+
+    /** Returns the result of OPERATION, reporting a failure to read or
+     * write the files of a repository, which the classes below this one
+     * signal with unchecked exceptions of the JDK's, as the
+     * GitletException every caller of this class expects. */
+    private static <T> T guard(Supplier<T> operation) {
+        try {
+            return operation.get();
+        } catch (IllegalArgumentException | IllegalStateException
+                 | UncheckedIOException e) {
+            String message = e.getMessage() == null ? e.toString() : e.getMessage();
+            throw new GitletException(message, e);
+        }
+    }
+
+    /** Stages the file NAME in the working tree. */
+    public void add(String name) {
+        write("add", () -> _staging.add(Utils.join(_workTree, new File(name).getName())));
+    }
+
+    /** Commits the staged files with MESSAGE. */
+    public void commit(String message) {
+        if (message == null || message.length() == 0) {
+            throw new GitletException("Please enter a commit message.");
+        }
+        write("commit", () -> {
+            if (_staging.isEmpty()) {
+                throw new GitletException("No changes added to the commit.");
+            }
+            _tree.addCommit(message, null);
+        });
+    }
+
+    /** Unstages NAME, or stages it for removal if it is tracked. */
+    public void rm(String name) {
+        write("rm", () -> _staging.rm(name));
+    }
+
+    /** Prints the history of the current branch. */
+    public void log() {
+        read("log", () -> _tree.printCommitHistory());
+    }
+
+    /** Prints the history of the current branch made from SINCE to
+     * UNTIL, in milliseconds since the epoch. */
+    public void log(long since, long until) {
+        read("log", () -> _tree.printCommitHistory(since, until));
+    }
+
+    /** Prints every commit ever made. */
+    public void globalLog() {
+        read("global-log", () -> _tree.printAllCommits());
+    }
+
+    /** Prints every commit made from SINCE to UNTIL, in milliseconds
+     * since the epoch, newest first. */
+    public void globalLog(long since, long until) {
+        read("global-log", () -> _tree.printAllCommits(since, until));
+    }
+
+    /** Prints the ID's of the commits with MESSAGE. */
+    public void find(String message) {
+        read("find", () -> _tree.find(message));
+    }
+
+    /** Prints the branches, the staging area, and the state of the
+     * working tree. */
+    public void status() {
+        read("status", () -> _staging.printStatus());
+    }
+
+    /** Checks out the head of BRANCH and makes it the current branch. */
+    public void checkoutBranch(String branch) {
+        write("checkout", () -> _tree.checkout(branch));
+    }
+
+    /** Restores NAME as it is in the head commit. */
+    public void checkoutFile(String name) {
+        write("checkout", () -> _tree.checkout("--", name));
+    }
+
+    /** Restores NAME as it is in the commit ID. */
+    public void checkoutFile(String id, String name) {
+        write("checkout", () -> _tree.checkout(id, "--", name));
+    }
+
+    /** Creates BRANCH at the head commit. */
+    public void branch(String branch) {
+        write("branch", () -> _tree.branch(branch));
+    }
+
+    /** Deletes BRANCH. */
+    public void rmBranch(String branch) {
+        write("rm-branch", () -> _tree.rmBranch(branch));
+    }
+
+    /** Folds every branch into the packed-refs file. */
+    public void packRefs() {
+        write("pack-refs", () -> _refs.pack());
+    }
+
+    /** Moves the current branch to the commit ID and checks it out. */
+    public void reset(String id) {
+        write("reset", () -> _tree.reset(id));
+    }
+
+    /** Merges BRANCH into the current branch. */
+    public void merge(String branch) {
+        write("merge", () -> _tree.merge(branch));
+    }
+
+    /** Saves LOCATION as the remote NAME. */
+    public void addRemote(String name, String location) {
+        write("add-remote", () -> _remotes.addRemote(name, location));
+    }
+
+    /** Forgets the remote NAME. */
+    public void rmRemote(String name) {
+        write("rm-remote", () -> _remotes.rmRemote(name));
+    }
+
+    /** Pushes the current branch to BRANCH at the remote NAME. Only the
+     * remote is written, so no local lock is taken. */
+    public void push(String name, String branch) {
+        read("push", () -> _remotes.push(name, branch));
+    }
+
+    /** Fetches BRANCH from the remote NAME as NAME/BRANCH. */
+    public void fetch(String name, String branch) {
+        fetch(name, branch, 0);
+    }
+
+    /** Fetches the last DEPTH commits of BRANCH from the remote NAME as
+     * NAME/BRANCH, or all of them if DEPTH is 0. */
+    public void fetch(String name, String branch, int depth) {
+        write("fetch", () -> _remotes.fetch(name, branch, depth));
+    }
+
+    /** Fetches BRANCH from the remote NAME and merges it. */
+    public void pull(String name, String branch) {
+        write("pull", () -> _remotes.pull(name, branch));
+    }
+
+    /** Makes PATTERNS the sparse checkout patterns, so that only the
+     * files they match are kept in the working tree, or makes the
+     * checkout full again if there are none. */
+    public void sparseCheckout(List<String> patterns) {
+        write("sparse-checkout", () -> _tree.sparse(patterns));
+    }
+
+    /** Returns the sparse checkout patterns, empty if the checkout is
+     * full. */
+    public List<String> sparsePatterns() {
+        return guard(() -> Sparse.patterns(_gitlet));
+    }
+
+    /** Removes the commits and blobs no branch can reach that are older
+     * than GRACESECONDS. */
+    public void gc(long graceSeconds) {
+        write("gc", () -> new GarbageCollector(this).collect(graceSeconds));
+    }
+
+    /** Imports the commits and branch updates of the stream IN, as read
+     * by FastImport, without touching the staging area or working tree. */
+    public void fastImport(InputStream in) {
+        write("fast-import", () -> new FastImport(this).run(in));
+    }
+
+    /** Writes the files of REV, a branch or commit ID, to the output as
+     * a tar or zip archive, as FORMAT says. The writer lock is held as
+     * a partial clone may fetch the blobs it needs. */
+    public void archive(String rev, String format) {
+        write("archive", () -> new Archive(this).write(rev, format, _out));
+    }
+
+    /** Writes the history of BRANCHES, or of every branch if there are
+     * none, to the output as a stream fast-import reads, leaving out
+     * what EXCLUDED reaches. The writer lock is held as a partial clone
+     * may fetch the blobs it needs. */
+    public void fastExport(List<String> branches, List<String> excluded) {
+        write("fast-export", () -> new FastExport(this).write(branches, excluded, _out));
+    }
+
+    /** Prints each line of NAME as it is in the head commit with the
+     * commit that last changed it. The writer lock is held because the
+     * result is cached, and a partial clone may fetch old versions. */
+    public void blame(String name) {
+        write("blame", () -> {
+            for (String line : new Blame(this).annotate(name)) {
+                _out.println(line);
+            }
+        });
+    }
+
+    /** Checks every object and prints a line for each that is corrupt,
+     * missing or dangling. The writer lock is held so that a concurrent
+     * gc cannot make objects appear missing. */
+    public void fsck() {
+        write("fsck", () -> {
+            for (String problem : new Fsck(this).check()) {
+                _out.println(problem);
+            }
+        });
+    }
+
+    /** Serves this repository on ADDRESS, as accepted by
+     * Protocol.address, until the process is killed. */
+    public void serve(String address) {
+        read("serve", () -> {
+            try {
+                new Server(_gitlet, _out).listen(Protocol.address(address));
+            } catch (IOException e) {
+                throw new GitletException("Could not serve on " + address + ": "
+                    + e.getMessage(), e);
+            }
+        });
+    }
+
+    /** The working tree. */
+    private final File _workTree;
+
+    /** The .gitlet directory for all persistence. */
+    private final File _gitlet;
+
+    /** Where commands print their output. */
+    private PrintStream _out;
+
+    /** The branches. */
+    private final Refs _refs;
+
+    /** The journal every write goes through. */
+    private final Journal _journal;
+
+    /** The commit tree. */
+    private final CommitTree _tree;
+
+    /** The staging area. */
+    private final StagingArea _staging;
+
+    /** The saved remotes. */
+    private final Remote _remotes;
+
+    /** Where missing blobs are fetched from. */
+    private final Promisor _promisor;
+}
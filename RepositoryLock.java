@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** The writer lock on a .gitlet directory. Holding it excludes every
+ * other writer, whether in another process or on another thread of this
+ * one. Readers never take it: every metadata file is replaced by an atomic
+ * rename and commits are immutable, so a reader always sees some complete
+ * state. The lock is reentrant within a thread.
+ * @author Jake Clayton */
+class RepositoryLock implements AutoCloseable {
+
+    /** Name of the lock file inside a .gitlet directory. */
+    static final String LOCK_FILE = "lock";
+
+    /** Blocks until this thread holds the writer lock on GITLET. */
+    static RepositoryLock acquire(File gitlet) {
+        String key;
+        try {
+            key = gitlet.getCanonicalPath();
+        } catch (IOException e) {
+            key = gitlet.getAbsolutePath();
+        }
+        ReentrantLock local = LOCAL.computeIfAbsent(key, k -> new ReentrantLock());
+        local.lock();
+        if (local.getHoldCount() > 1) {
+            return new RepositoryLock(local, null, null);
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(Utils.join(gitlet, LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return new RepositoryLock(local, channel, channel.lock());
+        } catch (IOException e) {
+            local.unlock();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    /* Already failing. */
+                }
+            }
+            throw new IllegalArgumentException("cannot lock " + gitlet + ": " + e.getMessage());
+        }
+    }
+
+    /** A held lock made of LOCAL and, for the outermost hold, the lock
+     * FILELOCK on CHANNEL. */
+    private RepositoryLock(ReentrantLock local, FileChannel channel, FileLock fileLock) {
+        _local = local;
+        _channel = channel;
+        _fileLock = fileLock;
+    }
+
+    /** Releases this hold on the lock. A failure to release the lock
+     * file is thrown, and so is added to whatever exception is already
+     * leaving the try-with-resources statement that holds it. */
+    @Override
+    public void close() {
+        try {
+            if (_fileLock != null) {
+                try {
+                    _fileLock.release();
+                } finally {
+                    _channel.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new GitletException("Could not release the lock: " + e.getMessage(), e);
+        } finally {
+            _local.unlock();
+        }
+    }
+
+    /** Per-directory locks for threads of this process, which FileLock
+     * does not distinguish between. */
+    private static final ConcurrentHashMap<String, ReentrantLock> LOCAL =
+        new ConcurrentHashMap<>();
+
+    /** The in-process lock. */
+    private final ReentrantLock _local;
+
+    /** The open lock file, or null for a nested hold. */
+    private final FileChannel _channel;
+
+    /** The lock on _channel, or null for a nested hold. */
+    private final FileLock _fileLock;
+}
@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/** Keeps up to a fixed number of Repositories open for a process that
+ * serves many of them, so that a request finds its repository's refs,
+ * journal and object cache already warm. Requests to one repository are
+ * served one at a time; requests to different repositories run in
+ * parallel. When the pool is over capacity, or the heap is nearly full,
+ * the least recently used repositories that no request is using are
+ * closed: their journal files are closed and their cached objects
+ * dropped. The objects of every repository share one cache, so
+ * GITLET_CACHE_BYTES bounds them all together.
+ * @author Jake Clayton */
+public class RepositoryPool {
+
+    /** Environment variable setting how many repositories are kept
+     * open. */
+    static final String SIZE_VARIABLE = "GITLET_POOL_SIZE";
+
+    /** The capacity when none is set. */
+    static final int DEFAULT_SIZE = 256;
+
+    /** Fraction of the maximum heap in use beyond which idle
+     * repositories are closed regardless of capacity. */
+    static final double PRESSURE = 0.85;
+
+    /** A pool sized by GITLET_POOL_SIZE. */
+    public RepositoryPool() {
+        this(capacitySetting());
+    }
+
+    /** A pool keeping at most CAPACITY repositories open. */
+    public RepositoryPool(int capacity) {
+        _capacity = Math.max(1, capacity);
+    }
+
+    /** Returns the result of OPERATION on the repository whose working
+     * tree is DIR, opening it if it is not already open. */
+    public <T> T apply(File dir, Function<Repository, T> operation) {
+        Slot slot = lease(dir);
+        try {
+            synchronized (slot) {
+                if (slot.repo == null) {
+                    slot.repo = Repository.open(dir);
+                }
+                return operation.apply(slot.repo);
+            }
+        } finally {
+            release(slot);
+        }
+    }
+
+    /** Runs OPERATION on the repository whose working tree is DIR. */
+    public void run(File dir, Consumer<Repository> operation) {
+        apply(dir, repo -> {
+            operation.accept(repo);
+            return null;
+        });
+    }
+
+    /** Returns the number of repositories open or being opened. */
+    public synchronized int size() {
+        return _slots.size();
+    }
+
+    /** Returns the number of repositories closed to make room. */
+    public synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Closes every repository no request is using. */
+    public synchronized void clear() {
+        evict(0);
+    }
+
+    /** Returns the slot for DIR, marked as in use. */
+    private synchronized Slot lease(File dir) {
+        String key;
+        try {
+            key = dir.getCanonicalPath();
+        } catch (IOException e) {
+            key = dir.getAbsolutePath();
+        }
+        Slot slot = _slots.computeIfAbsent(key, k -> new Slot(new File(k)));
+        slot.leases += 1;
+        return slot;
+    }
+
+    /** Marks SLOT as no longer in use by one request, and closes
+     * repositories if the pool has grown too large. */
+    private synchronized void release(Slot slot) {
+        slot.leases -= 1;
+        if (slot.repo == null && slot.leases == 0) {
+            _slots.remove(slot.dir.getPath());
+        }
+        if (underPressure()) {
+            evict(_capacity / 2);
+        } else if (_slots.size() > _capacity) {
+            evict(_capacity);
+        }
+    }
+
+    /** Closes idle repositories, least recently used first, until at
+     * most TARGET remain open or none are idle. */
+    private void evict(int target) {
+        Iterator<Slot> lru = _slots.values().iterator();
+        while (_slots.size() > target && lru.hasNext()) {
+            Slot slot = lru.next();
+            if (slot.leases == 0) {
+                lru.remove();
+                if (slot.repo != null) {
+                    slot.repo.journal().close();
+                }
+                _evictions += 1;
+            }
+        }
+    }
+
+    /** Returns whether the heap is nearly full. */
+    private static boolean underPressure() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        return used > PRESSURE * rt.maxMemory();
+    }
+
+    /** Returns the capacity set by GITLET_POOL_SIZE. */
+    private static int capacitySetting() {
+        String value = System.getenv(SIZE_VARIABLE);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                /* Fall through to the default. */
+            }
+        }
+        return DEFAULT_SIZE;
+    }
+
+    /** A pooled repository and the number of requests using it. */
+    private static class Slot {
+        /** The slot for the working tree DIR. */
+        Slot(File dir) {
+            this.dir = dir;
+        }
+
+        /** The working tree. */
+        final File dir;
+        /** The open repository, or null until the first request opens
+         * it. */
+        Repository repo;
+        /** Requests holding or waiting on this slot. */
+        int leases;
+    }
+
+    /** The most repositories kept open. */
+    private final int _capacity;
+
+    /** Open repositories by canonical working tree, least recently
+     * used first. */
+    private final LinkedHashMap<String, Slot> _slots =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Repositories closed to make room. */
+    private long _evictions;
+}
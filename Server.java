@@ -0,0 +1,249 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/** Serves the current repository to SocketTransports for the serve
+ * command. Each connection is handled on its own thread and may carry
+ * any number of requests.
+ * @author Jake Clayton */
+class Server {
+
+    /** Creates a server for the .gitlet directory REPO that reports
+     * on OUT. */
+    Server(File repo, PrintStream out) {
+        _repo = new LocalTransport(repo);
+        _out = out;
+    }
+
+    /** Accepts connections on ADDRESS forever. */
+    void listen(SocketAddress address) throws IOException {
+        ServerSocketChannel server;
+        if (address instanceof UnixDomainSocketAddress) {
+            new File(((UnixDomainSocketAddress) address).getPath().toString()).delete();
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        _out.println("Serving on " + server.getLocalAddress());
+        while (true) {
+            SocketChannel client = server.accept();
+            Thread worker = new Thread(() -> handle(client));
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /** Answers requests on CLIENT until it disconnects. A request that
+     * fails is answered with an ERROR frame, after which the connection
+     * is closed, as the client may still be sending what that request
+     * did not read. */
+    private void handle(SocketChannel client) {
+        try (client) {
+            Protocol.Reader in = new Protocol.Reader(client);
+            Protocol.Writer out = new Protocol.Writer(client);
+            Protocol.Frame f;
+            while ((f = in.read()) != null) {
+                try {
+                    answer(f, in, out);
+                } catch (RuntimeException e) {
+                    String message = e instanceof GitletException ? e.getMessage()
+                        : "The remote failed: " + e.getMessage();
+                    System.err.println("Request failed: " + e);
+                    out.write(Protocol.ERROR, Protocol.strings(message));
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    /** Answers the request F, reading anything that follows it from IN
+     * and writing the reply to OUT. */
+    private void answer(Protocol.Frame f, Protocol.Reader in, Protocol.Writer out)
+        throws IOException {
+        if (f.type == Protocol.LIST_REFS) {
+            out.write(Protocol.REFS, Protocol.map(_repo.refs()));
+        } else if (f.type == Protocol.FETCH) {
+            sendPack(Protocol.strings(f.payload), Set.of(), 0, true, out);
+        } else if (f.type == Protocol.FETCH_SHALLOW) {
+            sendShallowPack(Protocol.strings(f.payload), true, out);
+        } else if (f.type == Protocol.FETCH_FILTERED) {
+            sendShallowPack(Protocol.strings(f.payload), false, out);
+        } else if (f.type == Protocol.GET_BLOBS) {
+            sendBlobs(Protocol.strings(f.payload), out);
+        } else if (f.type == Protocol.PUSH) {
+            receivePack(Protocol.strings(f.payload), in, out);
+        } else {
+            out.write(Protocol.ERROR, Protocol.strings("Unknown request."));
+        }
+    }
+
+    /** Answers a FETCH_SHALLOW REQUEST, laid out as Protocol describes,
+     * or a FETCH_FILTERED one if not BLOBS. */
+    private void sendShallowPack(List<String> request, boolean blobs, Protocol.Writer out)
+        throws IOException {
+        int depth;
+        int count;
+        try {
+            depth = Integer.parseInt(request.get(1));
+            count = Integer.parseInt(request.get(2));
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            out.write(Protocol.ERROR, Protocol.strings("Malformed fetch."));
+            return;
+        }
+        if (depth < 0 || count < 0 || 3 + count > request.size()) {
+            out.write(Protocol.ERROR, Protocol.strings("Malformed fetch."));
+            return;
+        }
+        ArrayList<String> rest = new ArrayList<>(request.subList(0, 1));
+        rest.addAll(request.subList(3 + count, request.size()));
+        sendPack(rest, new HashSet<>(request.subList(3, 3 + count)), depth, blobs, out);
+    }
+
+    /** Answers a fetch REQUEST, which names a branch followed by the
+     * commit ID's the client already has, sending the commits within
+     * DEPTH generations of the branch (all of them if DEPTH is 0) and
+     * taking the client's history to stop at SHALLOW. If BLOBS, each
+     * commit is followed by the blobs it is the first to need. */
+    private void sendPack(List<String> request, Set<String> shallow, int depth,
+                          boolean blobs, Protocol.Writer out) throws IOException {
+        CommitIndex history = _repo.history();
+        String head = request.isEmpty() ? null : _repo.refs().get(request.get(0));
+        if (head == null) {
+            out.write(Protocol.ERROR, Protocol.strings("That remote does not have that branch."));
+            return;
+        }
+        out.write(Protocol.HEAD, Protocol.strings(head));
+        Predicate<String> held =
+            Pack.held(history, request.subList(1, request.size()), shallow, _repo.bitmaps());
+        List<Commit> missing = Pack.missingCommits(head, history, held, shallow, depth);
+        Set<String> sending = blobs ? Pack.missingBlobs(missing, history, held) : new HashSet<>();
+        for (Commit c : missing) {
+            out.write(Protocol.COMMIT, Utils.serialize(c));
+            for (String id : c.contents().values()) {
+                if (sending.remove(id)) {
+                    out.write(Protocol.BLOB, Protocol.blobHeader(id), _repo.readObject(id));
+                }
+            }
+        }
+        out.write(Protocol.DONE);
+    }
+
+    /** Answers a GET_BLOBS request for the blobs IDS. Anything not
+     * shaped like a blob ID is skipped, so no other file can be read. */
+    private void sendBlobs(List<String> ids, Protocol.Writer out) throws IOException {
+        for (String id : ids) {
+            if (!ObjectIds.BLOB.matcher(id).matches()) {
+                continue;
+            }
+            byte[] stored;
+            try {
+                stored = _repo.readObject(id);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            out.write(Protocol.BLOB, Protocol.blobHeader(id), stored);
+        }
+        out.write(Protocol.DONE);
+    }
+
+    /** Receives the commits and blobs following a PUSH HEADER, then moves
+     * the branch it names. Nothing from the client is trusted: the
+     * header must name a valid branch and commit ID's, each commit must
+     * be well formed, and each blob must be one a pushed commit refers to
+     * and hash to its ID under that file's name before it is stored.
+     * After the first problem the rest of the push is read and dropped,
+     * and the problem is the reply. */
+    private void receivePack(List<String> header, Protocol.Reader in,
+                             Protocol.Writer out) throws IOException {
+        String error = checkHeader(header);
+        ArrayList<Commit> commits = new ArrayList<>();
+        HashMap<String, String> names = new HashMap<>();
+        while (true) {
+            Protocol.Frame f = in.read();
+            if (f == null) {
+                throw new IOException("connection closed mid-push");
+            } else if (f.type == Protocol.DONE) {
+                break;
+            } else if (error != null) {
+                continue;
+            } else if (f.type == Protocol.COMMIT) {
+                Commit c = Protocol.commit(f.payload);
+                if (c == null) {
+                    error = "Pushed a corrupt commit.";
+                    continue;
+                }
+                commits.add(c);
+                for (Map.Entry<String, String> e : c.contents().entrySet()) {
+                    names.put(e.getValue(), e.getKey());
+                }
+            } else if (f.type == Protocol.BLOB) {
+                String id = Protocol.blobId(f.payload);
+                if (id == null) {
+                    error = "Pushed a malformed blob.";
+                    continue;
+                }
+                byte[] stored = Protocol.blobContents(f.payload);
+                Blob blob = Protocol.blob(stored);
+                String name = names.get(id);
+                if (name == null || blob == null || !blob.matches(id, name)) {
+                    error = "Pushed a corrupt blob " + id + ".";
+                    continue;
+                }
+                _repo.storeObject(id, stored);
+            } else {
+                throw new IOException("unexpected frame " + f.type);
+            }
+        }
+        if (error == null) {
+            String expected = header.get(1).isEmpty() ? null : header.get(1);
+            error = _repo.update(header.get(0), expected, header.get(2), commits);
+        }
+        if (error == null) {
+            out.write(Protocol.OK);
+        } else {
+            out.write(Protocol.ERROR, Protocol.strings(error));
+        }
+    }
+
+    /** Returns what is wrong with the PUSH frame's HEADER, or null if it
+     * names a valid branch, an expected head that is empty or a commit
+     * ID, and a new head that is a commit ID. */
+    private static String checkHeader(List<String> header) {
+        if (header.size() != 3
+            || !header.get(1).isEmpty() && !ObjectIds.COMMIT.matcher(header.get(1)).matches()
+            || !ObjectIds.COMMIT.matcher(header.get(2)).matches()) {
+            return "Malformed push.";
+        }
+        try {
+            Refs.checkName(header.get(0));
+        } catch (GitletException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /** The repository being served. */
+    private final LocalTransport _repo;
+
+    /** Where the server reports where it is listening. */
+    private final PrintStream _out;
+}
@@ -0,0 +1,70 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** The shallow boundary of a repository fetched with a depth limit: the
+ * commits it holds whose parents it deliberately lacks. They are listed,
+ * one ID to a line, in the file "shallow", which is absent when the
+ * history is complete. A fetch offers them to the remote so that what
+ * lies behind them is not taken as already held, and log and merge stop
+ * at them rather than treating the missing parents as corruption.
+ * @author Jake Clayton */
+class Shallow {
+
+    /** Name of the boundary file inside a .gitlet directory. */
+    static final String FILE = "shallow";
+
+    /** Returns the shallow commits of the .gitlet directory GITLET. */
+    static TreeSet<String> load(File gitlet) {
+        TreeSet<String> result = new TreeSet<>();
+        File file = Utils.join(gitlet, FILE);
+        if (file.isFile()) {
+            for (String id : Utils.readContentsAsString(file).split("\n")) {
+                if (!id.isEmpty()) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Recomputes the boundary of GITLET after the commits FETCHED were
+     * added to HISTORY, writing it through JOURNAL. A commit is on the
+     * boundary if it was fetched or was on it before and still lacks a
+     * parent. Returns whether some commit left the boundary, meaning the
+     * history was deepened. The caller must hold the writer lock. */
+    static boolean update(File gitlet, Map<String, Commit> history,
+                          Collection<Commit> fetched, Journal journal) {
+        TreeSet<String> before = load(gitlet);
+        TreeSet<String> candidates = new TreeSet<>(before);
+        for (Commit c : fetched) {
+            candidates.add(c.get_hashCode());
+        }
+        TreeSet<String> after = new TreeSet<>();
+        for (String id : candidates) {
+            Commit c = history.get(id);
+            if (c != null && (lacks(c.getParent(), history) || lacks(c.getParent2(), history))) {
+                after.add(id);
+            }
+        }
+        if (!after.equals(before)) {
+            File file = Utils.join(gitlet, FILE);
+            if (after.isEmpty()) {
+                journal.delete(file);
+            } else {
+                journal.write(file, (String.join("\n", after) + "\n")
+                              .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return !after.containsAll(before);
+    }
+
+    /** Returns whether PARENT is a commit HISTORY does not hold. */
+    private static boolean lacks(String parent, Map<String, Commit> history) {
+        return parent != null && !history.containsKey(parent);
+    }
+}
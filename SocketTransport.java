@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/** A Transport to a repository served by a Server, over TCP or a Unix
+ * domain socket.
+ * @author Jake Clayton */
+class SocketTransport implements Transport {
+
+    /** Connects to the Server listening at ADDRESS. */
+    SocketTransport(SocketAddress address) throws IOException {
+        _channel = SocketChannel.open(address);
+        _in = new Protocol.Reader(_channel);
+        _out = new Protocol.Writer(_channel);
+    }
+
+    @Override
+    public Map<String, String> refs() {
+        try {
+            _out.write(Protocol.LIST_REFS);
+            _out.flush();
+            return Protocol.map(expect(Protocol.REFS).payload);
+        } catch (IOException e) {
+            throw new GitletException("Lost connection to remote.", e);
+        }
+    }
+
+    @Override
+    public String fetch(String branch, Collection<String> have, Set<String> shallow, int depth,
+                        FetchCheckpoint into) {
+        ArrayList<String> request = new ArrayList<>();
+        request.add(branch);
+        byte type = Protocol.FETCH;
+        if (depth > 0 || !shallow.isEmpty() || !into.wantsBlobs()) {
+            type = into.wantsBlobs() ? Protocol.FETCH_SHALLOW : Protocol.FETCH_FILTERED;
+            request.add(Integer.toString(depth));
+            request.add(Integer.toString(shallow.size()));
+            request.addAll(shallow);
+        }
+        request.addAll(have);
+        try {
+            _out.write(type, Protocol.strings(request));
+            _out.flush();
+            String head = new String(expect(Protocol.HEAD).payload, StandardCharsets.UTF_8);
+            try (ObjectTransfer transfer = new ObjectTransfer()) {
+                while (true) {
+                    Protocol.Frame f = next();
+                    if (f.type == Protocol.DONE) {
+                        break;
+                    } else if (f.type == Protocol.COMMIT) {
+                        Commit c = Protocol.commit(f.payload);
+                        if (c == null) {
+                            throw new RejectedException("Received a corrupt commit.");
+                        }
+                        into.expect(c);
+                    } else if (f.type == Protocol.BLOB) {
+                        String id = Protocol.blobId(f.payload);
+                        if (id == null) {
+                            throw new IOException("malformed blob frame");
+                        }
+                        transfer.submit(id, () -> into.store(id, Protocol.blobContents(f.payload)));
+                    } else {
+                        throw new IOException("unexpected frame " + f.type);
+                    }
+                }
+                transfer.await();
+            }
+            return head.isEmpty() ? null : head;
+        } catch (IOException e) {
+            throw new GitletException("Lost connection to remote.", e);
+        }
+    }
+
+    @Override
+    public void fetchBlobs(Collection<String> ids, BiConsumer<String, byte[]> into) {
+        try {
+            _out.write(Protocol.GET_BLOBS, Protocol.strings(new ArrayList<>(ids)));
+            _out.flush();
+            try (ObjectTransfer transfer = new ObjectTransfer()) {
+                while (true) {
+                    Protocol.Frame f = next();
+                    if (f.type == Protocol.DONE) {
+                        break;
+                    } else if (f.type != Protocol.BLOB) {
+                        throw new IOException("unexpected frame " + f.type);
+                    }
+                    String id = Protocol.blobId(f.payload);
+                    if (id == null) {
+                        throw new IOException("malformed blob frame");
+                    }
+                    transfer.submit(id, () -> into.accept(id, Protocol.blobContents(f.payload)));
+                }
+                transfer.await();
+            }
+        } catch (IOException e) {
+            throw new GitletException("Lost connection to remote.", e);
+        }
+    }
+
+    @Override
+    public String push(String branch, String expected, String head, List<Commit> commits,
+                       Collection<String> blobs, File objects) {
+        try {
+            _out.write(Protocol.PUSH,
+                    Protocol.strings(branch, expected == null ? "" : expected, head));
+            for (Commit c : commits) {
+                _out.write(Protocol.COMMIT, Utils.serialize(c));
+            }
+            for (String id : blobs) {
+                _out.write(Protocol.BLOB, Protocol.blobHeader(id),
+                        Utils.readContents(Utils.join(objects, id)));
+            }
+            _out.write(Protocol.DONE);
+            _out.flush();
+            Protocol.Frame f = _in.read();
+            if (f == null) {
+                throw new IOException("connection closed");
+            } else if (f.type == Protocol.ERROR) {
+                return new String(f.payload, StandardCharsets.UTF_8);
+            } else if (f.type != Protocol.OK) {
+                throw new IOException("unexpected frame " + f.type);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new GitletException("Lost connection to remote.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            throw new GitletException("Could not close the connection: " + e.getMessage(), e);
+        }
+    }
+
+    /** Returns the next frame, reporting an ERROR frame from the server
+     * as a Gitlet error. */
+    private Protocol.Frame next() throws IOException {
+        Protocol.Frame f = _in.read();
+        if (f == null) {
+            throw new IOException("connection closed");
+        } else if (f.type == Protocol.ERROR) {
+            throw new RejectedException(new String(f.payload, StandardCharsets.UTF_8));
+        }
+        return f;
+    }
+
+    /** Returns the next frame, which must be of the given TYPE. */
+    private Protocol.Frame expect(byte type) throws IOException {
+        Protocol.Frame f = next();
+        if (f.type != type) {
+            throw new IOException("unexpected frame " + f.type);
+        }
+        return f;
+    }
+
+    /** The connection to the server. */
+    private final SocketChannel _channel;
+
+    /** Frames from the server. */
+    private final Protocol.Reader _in;
+
+    /** Frames to the server. */
+    private final Protocol.Writer _out;
+}
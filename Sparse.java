@@ -0,0 +1,75 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/** The sparse checkout patterns of a repository: globs, one to a line
+ * in the file "sparse-checkout", naming the files that are materialized
+ * in the working tree. Files no pattern matches stay tracked, and are
+ * carried from commit to commit, but checkout, reset and merge never
+ * write them and status never reads them. With no file, every file is
+ * included.
+ * @author Jake Clayton */
+class Sparse {
+
+    /** Name of the pattern file inside a .gitlet directory. */
+    static final String FILE = "sparse-checkout";
+
+    /** Returns the patterns of the .gitlet directory GITLET, empty if
+     * its checkout is not sparse. */
+    static List<String> patterns(File gitlet) {
+        ArrayList<String> result = new ArrayList<>();
+        File file = Utils.join(gitlet, FILE);
+        if (file.isFile()) {
+            for (String pattern : Utils.readContentsAsString(file).split("\n")) {
+                if (!pattern.isEmpty()) {
+                    result.add(pattern);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns a test of whether a file name is included by the patterns
+     * of GITLET. */
+    static Predicate<String> load(File gitlet) {
+        List<String> patterns = patterns(gitlet);
+        if (patterns.isEmpty()) {
+            return name -> true;
+        }
+        ArrayList<PathMatcher> matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+        return name -> {
+            Path path = Path.of(name);
+            for (PathMatcher m : matchers) {
+                if (m.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /** Replaces the patterns of GITLET with PATTERNS through JOURNAL,
+     * making the checkout full again if there are none. The caller must
+     * hold the writer lock. */
+    static void set(File gitlet, List<String> patterns, Journal journal) {
+        File file = Utils.join(gitlet, FILE);
+        if (patterns.isEmpty()) {
+            if (file.exists()) {
+                journal.delete(file);
+            }
+        } else {
+            journal.write(file, (String.join("\n", patterns) + "\n")
+                          .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,53 +1,54 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 /** Representation of the staging area.
  * @author Jake Clayton */
 public class StagingArea {
 
-    /** The command working directory. */
-    static final File CWD = new File(System.getProperty("user.dir"));
-
-    /** The .gitlet directory where all persistence is stored. */
-    static final File GITLET_FOLDER = Main.getDirectory();
-
-    /** Subdictory where all staging area files are persisted. */
-    static final File STAGING_FOLDER = Utils.join(GITLET_FOLDER, "staging");
-
-    /** Subdirectory of staging where files are staged to be added. */
-    static final File ADDITION_FOLDER = Utils.join(STAGING_FOLDER, "addition");
-
-    /** Subdirectory of staging where files are staged to be removed. */
-    static final File REMOVAL_FOLDER = Utils.join(STAGING_FOLDER, "removal");
+    /** The staging area of REPO. */
+    StagingArea(Repository repo) {
+        _repo = repo;
+        _cwd = repo.workTree();
+        _gitlet = repo.gitletDir();
+        _stagingFolder = Utils.join(_gitlet, "staging");
+        _additionFolder = Utils.join(_stagingFolder, "addition");
+        _removalFolder = Utils.join(_stagingFolder, "removal");
+    }
 
-    /** This is a file where branch and branch head information is stored. */
-    static final File INFO_FILE = Utils.join(GITLET_FOLDER, "info");
+    /** Matches staged files, leaving out the hidden temporary files an
+     * in-progress write may have left beside them. */
+    private static final FileFilter STAGED =
+        f -> f.isFile() && !f.getName().startsWith(".");
 
-    public static void initialize() {
-        assert GITLET_FOLDER.exists();
-        if (!STAGING_FOLDER.exists()) {
-            STAGING_FOLDER.mkdir();
+    /** Initializes the staging directories. */
+    public void initialize() {
+        assert _gitlet.exists();
+        if (!_stagingFolder.exists()) {
+            _stagingFolder.mkdir();
         }
-        if (!ADDITION_FOLDER.exists()) {
-            ADDITION_FOLDER.mkdir();
+        if (!_additionFolder.exists()) {
+            _additionFolder.mkdir();
         }
-        if (!REMOVAL_FOLDER.exists()) {
-            REMOVAL_FOLDER.mkdir();
+        if (!_removalFolder.exists()) {
+            _removalFolder.mkdir();
         }
     }
 
     /** Stages a file to be added. */
-    public static void add(File file) {
+    public void add(File file) {
         if (!file.exists()) {
-            File d = Utils.join(REMOVAL_FOLDER, file.getName());
+            File d = Utils.join(_removalFolder, file.getName());
             if (!d.exists()) {
-                Main.error("File does not exist.");
+                throw new NotFoundException("File does not exist.");
             }
             Blob reAdd = Utils.readObject(d, Blob.class);
             d.delete();
@@ -59,74 +60,79 @@ public class StagingArea {
             Utils.writeContents(file, reAdd.returnContents());
             return;
         }
-        Commit head = CommitTree.getHead();
+        Commit head = _repo.tree().getHead();
         Blob newBlob = new Blob(file);
-        if (head.contains(newBlob.get_hashCode())) {
-            File check = Utils.join(ADDITION_FOLDER, file.getName());
+        if (ObjectIds.same(head.getfileHash(file.getName()), newBlob.get_hashCode())) {
+            File check = Utils.join(_additionFolder, file.getName());
             if (check.exists()) {
                 check.delete();
             }
-            check = Utils.join(REMOVAL_FOLDER, file.getName());
+            check = Utils.join(_removalFolder, file.getName());
             if (check.exists()) {
                 check.delete();
             }
         } else {
-            File check = Utils.join(REMOVAL_FOLDER, file.getName());
+            File check = Utils.join(_removalFolder, file.getName());
             if (check.exists()) {
                 check.delete();
             }
-            File stageThis = Utils.join(ADDITION_FOLDER, file.getName());
-            if (stageThis.exists()) {
-                stageThis.delete();
-            }
-            try {
-                stageThis.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            File stageThis = Utils.join(_additionFolder, file.getName());
             Utils.writeObject(stageThis, newBlob);
         }
     }
 
+    /** Stages the blob ID as the new version of the file NAME without
+     * reading the working tree, for files a sparse checkout leaves out.
+     * In a partial clone the blob is fetched first if need be. */
+    void stage(String name, String id) {
+        _repo.promisor().ensure(Map.of(name, id));
+        File check = Utils.join(_removalFolder, name);
+        if (check.exists()) {
+            check.delete();
+        }
+        Utils.writeAtomically(Utils.join(_additionFolder, name),
+                              Utils.readContents(Utils.join(_gitlet, id)));
+    }
+
     /** Returns whether there are no files staged to be added or removed. */
-    public static boolean isEmpty() {
-        if (ADDITION_FOLDER.listFiles().length > 0 || REMOVAL_FOLDER.listFiles().length > 0) {
+    public boolean isEmpty() {
+        if (staged(_additionFolder).length > 0 || staged(_removalFolder).length > 0) {
             return false;
         }
         return true;
     }
 
     /** Returns an array of files staged to be added. */
-    public static File[] filestoAdd() {
-        return ADDITION_FOLDER.listFiles();
+    public File[] filestoAdd() {
+        return staged(_additionFolder);
     }
 
     /** Returns an array of files staged to be removed. */
-    public static File[] filestoRemove() {
-        return REMOVAL_FOLDER.listFiles();
+    public File[] filestoRemove() {
+        return staged(_removalFolder);
     }
 
     /** Deletes all staged files. */
-    public static void clear() {
+    public void clear() {
         if (isEmpty()) {
             return;
         }
-        File[] add = ADDITION_FOLDER.listFiles();
+        File[] add = staged(_additionFolder);
         for (File file : add) {
             file.delete();
         }
-        File[] remove = REMOVAL_FOLDER.listFiles();
+        File[] remove = staged(_removalFolder);
         for (File file : remove) {
             file.delete();
         }
     }
 
-    /** Removes a given file from the CWD if it exists and stages it to be removed.
+    /** Removes a given file from the _cwd if it exists and stages it to be removed.
      * It is no longer staged to be added if it was at the time of execution.
      * @param fileName */
-    public static void rm(String fileName) {
-        File check = Utils.join(ADDITION_FOLDER, fileName);
-        Commit head = CommitTree.getHead();
+    public void rm(String fileName) {
+        File check = Utils.join(_additionFolder, fileName);
+        Commit head = _repo.tree().getHead();
         boolean removed = false;
         Blob toDelete = null;
         if (check.exists()) {
@@ -135,100 +141,142 @@ public class StagingArea {
             removed = true;
         }
         if (head.containsFile(fileName)) {
-            check = Utils.join(CWD, fileName);
+            check = Utils.join(_cwd, fileName);
             if (check.exists()) {
                 toDelete = new Blob(check);
                 check.delete();
             } else if (check == null) {
-                Main.error("No reason to remove the file.");
-            }
-            File delete = Utils.join(REMOVAL_FOLDER, fileName);
-            if (!delete.exists()) {
-                try {
-                    delete.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                throw new GitletException("No reason to remove the file.");
             }
-            File f = Utils.join(REMOVAL_FOLDER, fileName);
+            File f = Utils.join(_removalFolder, fileName);
             Utils.writeObject(f, toDelete);
         } else if (!removed){
-            Main.error("No reason to remove the file.");
+            throw new GitletException("No reason to remove the file.");
         }
     }
 
     /** Prints out required information for the status command.
      * Returns branch information, staged files, removed files,
      * untracked files, and modifications not staged for commit.*/
-    @SuppressWarnings("unchecked")
-    public static void printStatus() {
-        HashMap<String, String> TrackingInfo = Utils.readObject(INFO_FILE, HashMap.class);
-        System.out.println("=== Branches ===");
-        System.out.println("*" + TrackingInfo.get("Active Branch"));
-        for (String entry : TrackingInfo.keySet()) {
-            if (!entry.equals("Active Branch") && !entry.equals("Active Head")) {
-                System.out.println(entry);
+    public void printStatus() {
+        String active = _repo.refs().activeBranch();
+        _repo.out().println("=== Branches ===");
+        _repo.out().println("*" + active);
+        for (String entry : _repo.refs().branches().keySet()) {
+            if (!entry.equals(active)) {
+                _repo.out().println(entry);
             }
         }
-        System.out.println();
-        HashSet<String> mainFiles = new HashSet<>(Utils.plainFilenamesIn(CWD));
-        Commit head = CommitTree.getHead();
-        System.out.println("=== Staged Files ===");
-        List<String> staged = Utils.plainFilenamesIn(ADDITION_FOLDER);
+        _repo.out().println();
+        Predicate<String> sparse = Sparse.load(_gitlet);
+        HashSet<String> mainFiles = workingFiles(sparse);
+        Commit head = _repo.tree().getHead();
+        _repo.out().println("=== Staged Files ===");
+        List<String> staged = stagedNames(_additionFolder);
         for (String fileName : staged) {
-            System.out.println(fileName);
+            _repo.out().println(fileName);
         }
-        System.out.println();
+        _repo.out().println();
         HashSet<String> stagedSet = new HashSet<>(staged);
-        System.out.println("=== Removed Files ===");
-        List<String> removed = Utils.plainFilenamesIn(REMOVAL_FOLDER);
+        _repo.out().println("=== Removed Files ===");
+        List<String> removed = stagedNames(_removalFolder);
         for (String fileName : removed) {
-            System.out.println(fileName);
+            _repo.out().println(fileName);
         }
-        System.out.println();
+        _repo.out().println();
         HashSet<String> removedSet = new HashSet<>(removed);
-        System.out.println("=== Modifications Not Staged For Commit ===");
-        HashMap<String, String> trackedFiles = head.contents();
+        _repo.out().println("=== Modifications Not Staged For Commit ===");
+        Map<String, String> trackedFiles = head.contents();
         ArrayList<String> untracked = new ArrayList<>();
         HashSet<String> checkFiles = new HashSet<>(staged);
         checkFiles.addAll(mainFiles);
         checkFiles.addAll(trackedFiles.keySet());
+        checkFiles.removeIf(sparse.negate());
         for (String fileName : checkFiles) {
             if (!trackedFiles.containsKey(fileName) && mainFiles.contains(fileName) && !stagedSet.contains(fileName) && !removedSet.contains(fileName)) {
                 untracked.add(fileName);
             }
             if (stagedSet.contains(fileName)) {
                 if (!mainFiles.contains(fileName)) {
-                    System.out.println(fileName + " (deleted)");
-                } else if (!new Blob(Utils.join(CWD, fileName)).get_hashCode().equals(Utils.readObject(Utils.join(ADDITION_FOLDER, fileName), Blob.class).get_hashCode())) {
-                    System.out.println(fileName + " (modified)");
+                    _repo.out().println(fileName + " (deleted)");
+                } else if (!ObjectIds.same(Blob.hash(Utils.join(_cwd, fileName)), Utils.readObject(Utils.join(_additionFolder, fileName), Blob.class).get_hashCode())) {
+                    _repo.out().println(fileName + " (modified)");
                 }
             } else if (trackedFiles.containsKey(fileName)) {
                 if (!mainFiles.contains(fileName)) {
                     if (!removedSet.contains(fileName)) {
-                        System.out.println(fileName + " (deleted)");
+                        _repo.out().println(fileName + " (deleted)");
                     }
                 } else {
-                    String mainContents = new Blob(Utils.join(CWD, fileName)).get_hashCode();
-                    File f = Utils.join(GITLET_FOLDER, head.contents().get(fileName));
-                    String commitContents = Utils.readObject(f, Blob.class).get_hashCode();
-                    if (!mainContents.equals(commitContents)) {
-                        System.out.println(fileName + " (modified)");
+                    String mainContents = Blob.hash(Utils.join(_cwd, fileName));
+                    String commitContents = head.contents().get(fileName);
+                    if (!ObjectIds.same(mainContents, commitContents)) {
+                        _repo.out().println(fileName + " (modified)");
                     }
                 }
             }
         }
-        System.out.println();
-        System.out.println("=== Untracked Files ===");
+        _repo.out().println();
+        _repo.out().println("=== Untracked Files ===");
         for (String fileName : untracked) {
-            System.out.println(fileName);
+            _repo.out().println(fileName);
         }
-        System.out.println();
+        _repo.out().println();
+    }
+
+    /** Returns the names of the plain files in the working directory that
+     * SPARSE includes, testing each name before looking at its file. */
+    private HashSet<String> workingFiles(Predicate<String> sparse) {
+        HashSet<String> result = new HashSet<>();
+        Trace.count(Trace.LISTINGS, 1);
+        String[] names = _cwd.list();
+        if (names != null) {
+            for (String name : names) {
+                if (sparse.test(name) && Utils.join(_cwd, name).isFile()) {
+                    result.add(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the files staged in DIR. */
+    private static File[] staged(File dir) {
+        Trace.count(Trace.LISTINGS, 1);
+        return dir.listFiles(STAGED);
+    }
+
+    /** Returns the names of the files staged in DIR, in lexicographic order. */
+    private List<String> stagedNames(File dir) {
+        ArrayList<String> result = new ArrayList<>();
+        for (File f : staged(dir)) {
+            result.add(f.getName());
+        }
+        Collections.sort(result);
+        return result;
     }
 
     /** Returns whether a file is staged to be added or not. */
-    public static boolean isStaged(String fileName) {
-        File check = Utils.join(ADDITION_FOLDER, fileName);
+    public boolean isStaged(String fileName) {
+        File check = Utils.join(_additionFolder, fileName);
         return check.exists();
     }
+
+    /** The repository this is the staging area of. */
+    private final Repository _repo;
+
+    /** The working directory. */
+    private final File _cwd;
+
+    /** The .gitlet directory where all persistence is stored. */
+    private final File _gitlet;
+
+    /** Subdictory where all staging area files are persisted. */
+    private final File _stagingFolder;
+
+    /** Subdirectory of staging where files are staged to be added. */
+    private final File _additionFolder;
+
+    /** Subdirectory of staging where files are staged to be removed. */
+    private final File _removalFolder;
 }
\ No newline at end of file
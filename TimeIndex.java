@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/** The commit_history snapshot, read a commit at a time. A checkpoint
+ * writes the commits it folds sorted by when they were made, and after
+ * them an index of each one's time, packed ID and place in the file, so
+ * that a range of times is found by binary search over the mapped index
+ * and only the commits in it are decoded, and a commit is found by ID
+ * through a table built from the index when first asked for. The file
+ * holds a magic number, then each commit as its length and the form
+ * Commit.write() gives it, then the index, then where the index starts,
+ * the number of commits and the magic number again. A snapshot written
+ * before it had an index is a serialized map, which only load() reads.
+ * The commits still in the journal are handed in by the Journal.
+ * @author Jake Clayton */
+class TimeIndex {
+
+    /** First and last int of an indexed snapshot. */
+    private static final int MAGIC = 0x47534e32;
+
+    /** Bytes after the index: where it starts, the count and the magic
+     * number. */
+    private static final int TRAILER = 16;
+
+    /** Bytes per index entry: time, packed ID and offset. */
+    private static final int ENTRY = 16 + 8 * ObjectIds.WORDS;
+
+    /** Orders commits by when they were made, then by ID. */
+    private static final Comparator<Commit> BY_TIME =
+        Comparator.comparingLong(Commit::getTime).thenComparing(Commit::get_hashCode);
+
+    /** Writes COMMITS to FILE as an indexed snapshot. */
+    static void write(File file, Collection<Commit> commits) throws IOException {
+        Commit[] sorted = commits.toArray(new Commit[0]);
+        Arrays.sort(sorted, BY_TIME);
+        long[] offsets = new long[sorted.length];
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            long offset = 4;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(bytes);
+            for (int i = 0; i < sorted.length; i += 1) {
+                bytes.reset();
+                sorted[i].write(record);
+                offsets[i] = offset;
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+                offset += 4 + bytes.size();
+            }
+            long start = offset;
+            if (start + (long) sorted.length * ENTRY + TRAILER > Integer.MAX_VALUE) {
+                throw new IOException("history too large to index");
+            }
+            long[] key = new long[ObjectIds.WORDS];
+            for (int i = 0; i < sorted.length; i += 1) {
+                out.writeLong(sorted[i].getTime());
+                ObjectIds.pack(sorted[i].get_hashCode(), key, 0);
+                for (long w : key) {
+                    out.writeLong(w);
+                }
+                out.writeLong(offsets[i]);
+            }
+            out.writeLong(start);
+            out.writeInt(sorted.length);
+            out.writeInt(MAGIC);
+        }
+    }
+
+    /** Returns every commit in the snapshot FILE, in either form. */
+    @SuppressWarnings("unchecked")
+    static CommitIndex load(File file) {
+        byte[] contents = Utils.readContents(file);
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        if (contents.length < 4 + TRAILER || buffer.getInt(0) != MAGIC) {
+            Serializable stored = Utils.deserialize(contents, Serializable.class);
+            return stored instanceof CommitIndex ? (CommitIndex) stored
+                : new CommitIndex((Map<String, Commit>) stored);
+        }
+        int count = buffer.getInt(contents.length - 8);
+        CommitIndex result = new CommitIndex();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents))) {
+            in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                in.readInt();
+                Commit c = Commit.read(in);
+                result.put(c.get_hashCode(), c);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("bad snapshot: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the index of the snapshot FILE, or of no snapshot if FILE
+     * is null, together with the commits of RECENT, or null if the
+     * snapshot was written before it had an index. */
+    static TimeIndex open(File file, Map<String, Commit> recent) {
+        if (file == null) {
+            return new TimeIndex(null, recent);
+        }
+        ByteBuffer snapshot;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 + TRAILER || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read snapshot: " + e.getMessage());
+        }
+        if (snapshot.getInt(0) != MAGIC || snapshot.getInt(snapshot.capacity() - 4) != MAGIC) {
+            return null;
+        }
+        return new TimeIndex(snapshot, recent);
+    }
+
+    /** Returns those of COMMITS made from SINCE to UNTIL, both in
+     * milliseconds since the epoch and inclusive, newest first. */
+    static List<Commit> range(Collection<Commit> commits, long since, long until) {
+        ArrayList<Commit> result = new ArrayList<>();
+        for (Commit c : commits) {
+            if (c.getTime() >= since && c.getTime() <= until) {
+                result.add(c);
+            }
+        }
+        result.sort(BY_TIME.reversed());
+        return result;
+    }
+
+    /** The index of SNAPSHOT, mapped, or of none if it is null, together
+     * with the commits of RECENT. */
+    private TimeIndex(ByteBuffer snapshot, Map<String, Commit> recent) {
+        _snapshot = snapshot;
+        _recent = recent;
+        if (snapshot == null) {
+            _start = 0;
+            _count = 0;
+        } else {
+            int trailer = snapshot.capacity() - TRAILER;
+            long start = snapshot.getLong(trailer);
+            _count = snapshot.getInt(trailer + 8);
+            if (start < 4 || _count < 0 || start + (long) _count * ENTRY != trailer) {
+                throw new IllegalArgumentException("bad snapshot index");
+            }
+            _start = (int) start;
+        }
+    }
+
+    /** Returns the commits made from SINCE to UNTIL, both in milliseconds
+     * since the epoch and inclusive, newest first. */
+    List<Commit> range(long since, long until) {
+        ArrayList<Commit> result = new ArrayList<>(range(_recent.values(), since, until));
+        int end = until == Long.MAX_VALUE ? _count : first(until + 1);
+        for (int i = first(since); i < end; i += 1) {
+            if (!_recent.containsKey(id(i))) {
+                result.add(commit(i));
+            }
+        }
+        result.sort(BY_TIME.reversed());
+        return result;
+    }
+
+    /** Returns the commit ID, or null if there is none. */
+    Commit get(String id) {
+        Commit result = _recent.get(id);
+        if (result != null) {
+            return result;
+        }
+        if (_ids == null) {
+            _ids = new IdIndex();
+            for (int i = 0; i < _count; i += 1) {
+                _ids.put(id(i), i);
+            }
+        }
+        int i = _ids.get(id);
+        return i < 0 ? null : commit(i);
+    }
+
+    /** Returns the position of the first entry at or after TIME. */
+    private int first(long time) {
+        int lo = 0;
+        int hi = _count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_snapshot.getLong(_start + mid * ENTRY) < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the ID of entry I. */
+    private String id(int i) {
+        long[] key = new long[ObjectIds.WORDS];
+        for (int w = 0; w < key.length; w += 1) {
+            key[w] = _snapshot.getLong(_start + i * ENTRY + 8 + 8 * w);
+        }
+        return ObjectIds.unpack(key, 0);
+    }
+
+    /** Returns the commit of entry I, decoded from the snapshot. */
+    private Commit commit(int i) {
+        long offset = _snapshot.getLong(_start + i * ENTRY + ENTRY - 8);
+        int length = offset >= 4 && offset < _start - 4 ? _snapshot.getInt((int) offset) : -1;
+        if (length < 0 || offset + 4 + length > _start) {
+            throw new IllegalArgumentException("bad snapshot entry " + i);
+        }
+        byte[] record = new byte[length];
+        _snapshot.get((int) offset + 4, record);
+        Trace.count(Trace.OBJECTS_READ, 1);
+        try {
+            return Commit.read(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("bad snapshot: " + e.getMessage());
+        }
+    }
+
+    /** The snapshot, mapped, or null if there is none. */
+    private final ByteBuffer _snapshot;
+
+    /** Where in _snapshot the index starts. */
+    private final int _start;
+
+    /** Number of commits in the index. */
+    private final int _count;
+
+    /** The commits still in the journal, by ID. */
+    private final Map<String, Commit> _recent;
+
+    /** The position of each commit in the index, by ID, once built. */
+    private IdIndex _ids;
+}
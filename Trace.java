@@ -0,0 +1,213 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Timing of the phases of a command, and counts of the I/O it does.
+ * Tracing is turned on by the --trace option or by setting GITLET_TRACE,
+ * in which case a report is printed on the standard error once the
+ * command finishes. Independently of that, each phase and each file read
+ * or written is a JDK Flight Recorder event, so a command may be profiled
+ * with -XX:StartFlightRecording. When neither is on, a phase costs one
+ * check and a counter nothing.
+ * @author Jake Clayton */
+class Trace {
+
+    /** Environment variable that turns tracing on unless it is empty
+     * or 0. */
+    static final String VARIABLE = "GITLET_TRACE";
+
+    /** Counter of objects deserialized from files. */
+    static final String OBJECTS_READ = "objects read";
+    /** Counter of objects serialized to files. */
+    static final String OBJECTS_WRITTEN = "objects written";
+    /** Counter of bytes read from files. */
+    static final String BYTES_READ = "bytes read";
+    /** Counter of bytes written to files. */
+    static final String BYTES_WRITTEN = "bytes written";
+    /** Counter of fsyncs. */
+    static final String FSYNCS = "fsyncs";
+    /** Counter of directories listed. */
+    static final String LISTINGS = "directory listings";
+    /** Counter of object cache hits. */
+    static final String CACHE_HITS = "cache hits";
+    /** Counter of object cache misses. */
+    static final String CACHE_MISSES = "cache misses";
+
+    /** A phase being timed, ended by closing it. */
+    interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Turns tracing on. */
+    static void enable() {
+        _enabled = true;
+    }
+
+    /** Returns whether tracing is on. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Starts timing the phase NAME. */
+    static Span begin(String name) {
+        if (!_enabled && !PHASES.isEnabled()) {
+            return NONE;
+        }
+        return new Phase(name);
+    }
+
+    /** Runs OPERATION as the phase NAME. */
+    @SuppressWarnings("try")
+    static void run(String name, Runnable operation) {
+        try (Span span = begin(name)) {
+            operation.run();
+        }
+    }
+
+    /** Returns the result of OPERATION, timed as the phase NAME. */
+    @SuppressWarnings("try")
+    static <T> T call(String name, Supplier<T> operation) {
+        try (Span span = begin(name)) {
+            return operation.get();
+        }
+    }
+
+    /** Adds N to the counter NAME. */
+    static void count(String name, long n) {
+        if (_enabled) {
+            COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(n);
+        }
+    }
+
+    /** Records that OPERATION was done to the file PATH, moving BYTES,
+     * counting it as OBJECTS objects. */
+    static void io(String operation, String path, long bytes, long objects) {
+        boolean reading = operation.startsWith("read");
+        if (_enabled) {
+            count(reading ? BYTES_READ : BYTES_WRITTEN, bytes);
+            if (objects > 0) {
+                count(reading ? OBJECTS_READ : OBJECTS_WRITTEN, objects);
+            }
+        }
+        if (IO.isEnabled()) {
+            FileEvent e = new FileEvent();
+            e.operation = operation;
+            e.path = path;
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    /** Prints the timings and counters gathered during COMMAND, which
+     * took NANOS in all, on OUT. */
+    static void report(String command, long nanos, PrintStream out) {
+        out.printf("trace: %s %.3f ms%n", command, nanos / 1e6);
+        out.printf("  %-24s %8s %12s%n", "phase", "calls", "total ms");
+        for (Map.Entry<String, long[]> e : new TreeMap<>(TIMES).entrySet()) {
+            long[] t = e.getValue();
+            synchronized (t) {
+                out.printf("  %-24s %8d %12.3f%n", e.getKey(), t[0], t[1] / 1e6);
+            }
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(COUNTERS).entrySet()) {
+            out.printf("  %-24s %8d%n", e.getKey(), e.getValue().sum());
+        }
+    }
+
+    /** A timed phase, also recorded as a Flight Recorder event. */
+    private static class Phase implements Span {
+        /** Starts the phase NAME. */
+        Phase(String name) {
+            _name = name;
+            _event = new PhaseEvent();
+            _event.phase = name;
+            _event.begin();
+            _start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long elapsed = System.nanoTime() - _start;
+            _event.commit();
+            if (_enabled) {
+                long[] t = TIMES.computeIfAbsent(_name, k -> new long[2]);
+                synchronized (t) {
+                    t[0] += 1;
+                    t[1] += elapsed;
+                }
+            }
+        }
+
+        /** The phase. */
+        private final String _name;
+        /** Its Flight Recorder event. */
+        private final PhaseEvent _event;
+        /** When it started. */
+        private final long _start;
+    }
+
+    /** Flight Recorder event for one phase of a command. */
+    @Name("gitlet.Phase")
+    @Label("Gitlet Phase")
+    @Category("Gitlet")
+    @Description("A timed phase of a gitlet command")
+    static class PhaseEvent extends Event {
+        /** The phase. */
+        @Label("Phase")
+        String phase;
+    }
+
+    /** Flight Recorder event for a file read or written. */
+    @Name("gitlet.FileIO")
+    @Label("Gitlet File I/O")
+    @Category("Gitlet")
+    @Description("A file in a repository read or written whole")
+    static class FileEvent extends Event {
+        /** What was done: read, readObject, write or writeObject. */
+        @Label("Operation")
+        String operation;
+        /** The file. */
+        @Label("Path")
+        String path;
+        /** Bytes moved. */
+        @Label("Bytes")
+        long bytes;
+    }
+
+    /** The span returned when nothing is listening. */
+    private static final Span NONE = () -> { };
+
+    /** Used to ask whether Flight Recorder wants phase events. */
+    private static final PhaseEvent PHASES = new PhaseEvent();
+
+    /** Used to ask whether Flight Recorder wants file events. */
+    private static final FileEvent IO = new FileEvent();
+
+    /** Calls and total nanoseconds of each phase. */
+    private static final ConcurrentHashMap<String, long[]> TIMES =
+        new ConcurrentHashMap<>();
+
+    /** The counters. */
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS =
+        new ConcurrentHashMap<>();
+
+    /** Whether tracing is on. */
+    private static volatile boolean _enabled = isSet(System.getenv(VARIABLE));
+
+    /** Returns whether VALUE turns tracing on. */
+    private static boolean isSet(String value) {
+        return value != null && !value.isEmpty() && !value.equals("0");
+    }
+}
@@ -0,0 +1,67 @@
+package gitlet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/** A connection to another Gitlet repository, over which branch
+ * information can be read and commits and blobs exchanged.
+ * @author Jake Clayton */
+interface Transport extends Closeable {
+
+    /** Returns the other repository's branches and their commit ID's. */
+    Map<String, String> refs();
+
+    /** Hands the commits reachable from BRANCH but not from any of HAVE,
+     * parents first, and their blobs to INTO. Only commits within DEPTH
+     * generations of BRANCH are sent, unless DEPTH is 0. The receiver's
+     * history stops at the commits in SHALLOW, so what lies behind them
+     * is not taken as held. Returns the commit ID of BRANCH, or null if
+     * there is no such branch. */
+    String fetch(String branch, Collection<String> have, Set<String> shallow, int depth,
+                 FetchCheckpoint into);
+
+    /** Hands each of the blobs named by IDS that the other repository
+     * holds to INTO, along with its stored bytes. INTO may be called from
+     * several threads at once. */
+    void fetchBlobs(Collection<String> ids, BiConsumer<String, byte[]> into);
+
+    /** Sends COMMITS, and the blobs named by BLOBS from the directory
+     * OBJECTS, then moves BRANCH from EXPECTED (null if the branch is
+     * new) to HEAD. Returns null on success, otherwise the reason the
+     * branch could not be moved. */
+    String push(String branch, String expected, String head, List<Commit> commits,
+                Collection<String> blobs, File objects);
+
+    @Override
+    void close();
+
+    /** Returns a Transport to the repository at LOCATION, which is either
+     * a path to a .gitlet directory, gitlet://HOST[:PORT], or unix:PATH. */
+    static Transport open(String location) {
+        if (!location.startsWith(Protocol.SCHEME) && !location.startsWith("unix:")) {
+            File remoteGit = new File(location);
+            if (!remoteGit.exists()) {
+                throw new NotFoundException("Remote directory not found.");
+            }
+            return new LocalTransport(remoteGit);
+        }
+        String address = location;
+        if (location.startsWith(Protocol.SCHEME)) {
+            address = location.substring(Protocol.SCHEME.length());
+            if (address.endsWith("/")) {
+                address = address.substring(0, address.length() - 1);
+            }
+        }
+        try {
+            return new SocketTransport(Protocol.address(address));
+        } catch (IOException e) {
+            throw new NotFoundException("Remote directory not found.");
+        }
+    }
+}
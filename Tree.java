@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** The files of a commit: an immutable map from file names to blob ID's.
+ * The names are kept sorted in one array, found by binary search, and
+ * the blob ID's packed by ObjectIds in one array of longs beside them,
+ * so that an entry costs its name and no more, where a HashMap would add
+ * a node and a String ID. It is serialized as its number of files and
+ * then each name and packed ID, in order.
+ * @author Jake Clayton */
+final class Tree extends AbstractMap<String, String> implements Serializable {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** The tree holding no files. */
+    static final Tree EMPTY = new Tree(new String[0], new long[0]);
+
+    /** Returns a tree of FILES, a map of file names to blob ID's. */
+    static Tree of(Map<String, String> files) {
+        if (files instanceof Tree) {
+            return (Tree) files;
+        }
+        String[] names = files.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        long[] ids = new long[ObjectIds.WORDS * names.length];
+        for (int i = 0; i < names.length; i += 1) {
+            String id = files.get(names[i]);
+            if (!ObjectIds.pack(id, ids, ObjectIds.WORDS * i) || id.charAt(0) != 'b') {
+                throw new IllegalArgumentException("not a blob ID: " + id);
+            }
+        }
+        return new Tree(names, ids);
+    }
+
+    /** A tree of the sorted file NAMES, the blob ID of each packed in
+     * IDS. */
+    private Tree(String[] names, long[] ids) {
+        _names = names;
+        _ids = ids;
+    }
+
+    @Override
+    public int size() {
+        return _names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return name instanceof String && Arrays.binarySearch(_names, name) >= 0;
+    }
+
+    @Override
+    public String get(Object name) {
+        if (!(name instanceof String)) {
+            return null;
+        }
+        int i = Arrays.binarySearch(_names, name);
+        return i < 0 ? null : ObjectIds.unpack(_ids, ObjectIds.WORDS * i);
+    }
+
+    @Override
+    public boolean containsValue(Object id) {
+        long[] key = new long[ObjectIds.WORDS];
+        if (!(id instanceof String) || !ObjectIds.pack((String) id, key, 0)) {
+            return false;
+        }
+        for (int at = 0; at < _ids.length; at += ObjectIds.WORDS) {
+            if (_ids[at] == key[0] && _ids[at + 1] == key[1] && _ids[at + 2] == key[2]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return _names.length;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return _next < _names.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = _next;
+                        _next += 1;
+                        return new SimpleImmutableEntry<>(
+                            _names[i], ObjectIds.unpack(_ids, ObjectIds.WORDS * i));
+                    }
+
+                    /** The entry next() gives. */
+                    private int _next;
+                };
+            }
+        };
+    }
+
+    /** Writes the number of files and then each name and packed ID to
+     * OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(_names.length);
+        for (int i = 0; i < _names.length; i += 1) {
+            out.writeUTF(_names[i]);
+            for (int w = 0; w < ObjectIds.WORDS; w += 1) {
+                out.writeLong(_ids[ObjectIds.WORDS * i + w]);
+            }
+        }
+    }
+
+    /** Writes this tree to OUT as write() does. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        write(out);
+    }
+
+    /** Reads the tree writeObject wrote from IN. */
+    private void readObject(ObjectInputStream in) throws IOException {
+        Tree tree = read(in);
+        _names = tree._names;
+        _ids = tree._ids;
+    }
+
+    /** Returns the tree write() wrote to IN, whose files must be in
+     * order and name blobs. */
+    static Tree read(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            throw new InvalidObjectException("bad file count: " + n);
+        }
+        String[] names = new String[Math.min(n, 1 << 16)];
+        long[] ids = new long[ObjectIds.WORDS * names.length];
+        for (int i = 0; i < n; i += 1) {
+            if (i == names.length) {
+                names = Arrays.copyOf(names, 2 * i);
+                ids = Arrays.copyOf(ids, ObjectIds.WORDS * 2 * i);
+            }
+            names[i] = in.readUTF();
+            for (int w = 0; w < ObjectIds.WORDS; w += 1) {
+                ids[ObjectIds.WORDS * i + w] = in.readLong();
+            }
+            if (i > 0 && names[i - 1].compareTo(names[i]) >= 0
+                || !ObjectIds.isPackedBlob(ids, ObjectIds.WORDS * i)) {
+                throw new InvalidObjectException("bad file entry: " + names[i]);
+            }
+        }
+        return new Tree(Arrays.copyOf(names, n), Arrays.copyOf(ids, ObjectIds.WORDS * n));
+    }
+
+    /** The file names, sorted. */
+    private transient String[] _names;
+
+    /** The blob ID of each name, packed by ObjectIds at ObjectIds.WORDS
+     * times its position in _names. */
+    private transient long[] _ids;
+}
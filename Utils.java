@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -11,11 +12,10 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -32,25 +32,11 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
+        MessageDigest md = Hashing.sha1();
+        for (Object val : vals) {
+            Hashing.update(md, val);
         }
+        return Hashing.hex(md, UID_LENGTH);
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -94,7 +80,9 @@ class Utils {
             throw new IllegalArgumentException("must be a normal file");
         }
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] contents = Files.readAllBytes(file.toPath());
+            Trace.io("read", file.getPath(), contents.length, 0);
+            return contents;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -119,14 +107,15 @@ class Utils {
             }
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+            long bytes = 0;
             for (Object obj : contents) {
-                if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
-                } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
-                }
+                byte[] b = obj instanceof byte[]
+                    ? (byte[]) obj : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                str.write(b);
+                bytes += b.length;
             }
             str.close();
+            Trace.io("write", file.getPath(), bytes, 0);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -141,6 +130,7 @@ class Utils {
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            Trace.io("readObject", file.getPath(), file.length(), 1);
             return result;
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
@@ -148,9 +138,32 @@ class Utils {
         }
     }
 
-    /** Write OBJ to FILE. */
+    /** Write the result of concatenating the bytes in CONTENTS to FILE as
+     *  for writeContents, but through a hidden temporary file in the same
+     *  directory that is then renamed over FILE.  A concurrent reader of
+     *  FILE sees either its old or its new contents, never a mixture.
+     *  Throws IllegalArgumentException in case of problems. */
+    static void writeAtomically(File file, Object... contents) {
+        File tmp = null;
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            tmp = File.createTempFile("." + file.getName() + ".", ".tmp", dir);
+            writeContents(tmp, contents);
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write OBJ to FILE, atomically replacing any previous contents. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        writeAtomically(file, serialize(obj));
+        Trace.count(Trace.OBJECTS_WRITTEN, 1);
     }
 
     /* DIRECTORIES */
@@ -168,6 +181,7 @@ class Utils {
      *  lexicographic order as Java Strings.  Returns null if DIR does
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
+        Trace.count(Trace.LISTINGS, 1);
         String[] files = dir.list(PLAIN_FILES);
         if (files == null) {
             return null;
@@ -216,6 +230,22 @@ class Utils {
         }
     }
 
+    /** Returns the object of type T serialized in BYTES, casting it to
+     *  EXPECTEDCLASS.  Throws IllegalArgumentException in case of problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/** A small benchmark harness in the manner of JMH, for a tree built with
+ * nothing but javac. Each benchmark runs for a number of timed warmup
+ * iterations whose results are thrown away, and then for a number of
+ * measured iterations. Results are printed as a table and may be
+ * written as CSV, one row per benchmark and parameter, so that the runs
+ * of two revisions can be compared with
+ *
+ *     java -cp out gitlet.Bench OLD.csv NEW.csv
+ *
+ * @author Jake Clayton */
+public class Bench {
+
+    /** Something a benchmark computes, kept so the JIT cannot discard
+     * the work that produced it. */
+    public interface Op {
+        /** Performs one operation and returns its result. */
+        Object run() throws Exception;
+    }
+
+    /** A harness running WARMUP and MEASURE iterations of at least
+     * ITERATIONMILLIS milliseconds each, reporting only benchmarks
+     * whose name contains FILTER. */
+    Bench(int warmup, int measure, long iterationMillis, String filter) {
+        _warmup = warmup;
+        _measure = measure;
+        _iterationNanos = iterationMillis * 1_000_000L;
+        _filter = filter;
+    }
+
+    /** Returns whether the benchmark NAME is to be run. */
+    boolean selected(String name) {
+        return _filter == null || name.contains(_filter);
+    }
+
+    /** Measures the benchmark NAME with parameter PARAM, whose operation
+     * is made by SETUP. */
+    void run(String name, String param, Supplier<Op> setup) {
+        if (!selected(name)) {
+            return;
+        }
+        Op op = setup.get();
+        try {
+            for (int i = 0; i < _warmup; i += 1) {
+                iteration(op);
+            }
+            double[] nanos = new double[_measure];
+            for (int i = 0; i < _measure; i += 1) {
+                nanos[i] = iteration(op);
+            }
+            Result r = new Result(name, param, nanos);
+            _results.add(r);
+            System.out.println(r);
+        } catch (Exception e) {
+            System.out.printf("%-28s %-10s failed: %s%n", name, param, e);
+        }
+    }
+
+    /** Runs OP for at least one iteration's time and returns its mean
+     * time in nanoseconds. */
+    private double iteration(Op op) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            consume(op.run());
+            ops += 1;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < _iterationNanos);
+        return elapsed / (double) ops;
+    }
+
+    /** Keeps VALUE observable. */
+    private static void consume(Object value) {
+        _sink ^= System.identityHashCode(value);
+    }
+
+    /** Writes every result so far to FILE as CSV. */
+    void write(File file) throws IOException {
+        try (PrintStream out = new PrintStream(file)) {
+            out.println("benchmark,param,ns_per_op,error_ns,ops_per_s,iterations");
+            for (Result r : _results) {
+                out.printf(Locale.ROOT, "%s,%s,%.1f,%.1f,%.3f,%d%n",
+                    r.name, r.param, r.mean, r.error, 1e9 / r.mean, r.count);
+            }
+        }
+    }
+
+    /** Prints how each benchmark in the CSV file NEW compares with the
+     * same benchmark in OLD. */
+    static void compare(File old, File updated) throws IOException {
+        Map<String, double[]> before = read(old);
+        System.out.printf("%-40s %14s %14s %9s%n", "benchmark", "old ns/op", "new ns/op", "change");
+        for (Map.Entry<String, double[]> e : read(updated).entrySet()) {
+            double[] was = before.get(e.getKey());
+            double now = e.getValue()[0];
+            if (was == null) {
+                System.out.printf("%-40s %14s %14.1f %9s%n", e.getKey(), "-", now, "new");
+                continue;
+            }
+            double change = (now - was[0]) / was[0] * 100;
+            boolean significant = Math.abs(now - was[0]) > was[1] + e.getValue()[1];
+            System.out.printf("%-40s %14.1f %14.1f %+8.1f%%%s%n",
+                e.getKey(), was[0], now, change, significant ? "" : " ~");
+        }
+    }
+
+    /** Returns the mean and error of each benchmark in the CSV FILE. */
+    private static Map<String, double[]> read(File file) throws IOException {
+        LinkedHashMap<String, double[]> result = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(file.toPath());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            result.put(f[0] + " " + f[1],
+                new double[] {Double.parseDouble(f[2]), Double.parseDouble(f[3])});
+        }
+        return result;
+    }
+
+    /** Compares the result files named in ARGS. */
+    public static void main(String... args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java gitlet.Bench OLD.csv NEW.csv");
+            return;
+        }
+        compare(new File(args[0]), new File(args[1]));
+    }
+
+    /** The measurements of one benchmark. */
+    private static class Result {
+        /** The result of NAME with PARAM, whose iterations took NANOS
+         * per operation. */
+        Result(String name, String param, double[] nanos) {
+            this.name = name;
+            this.param = param;
+            this.count = nanos.length;
+            double sum = 0;
+            for (double n : nanos) {
+                sum += n;
+            }
+            mean = sum / nanos.length;
+            double var = 0;
+            for (double n : nanos) {
+                var += (n - mean) * (n - mean);
+            }
+            error = nanos.length > 1 ? 2 * Math.sqrt(var / (nanos.length - 1)) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-28s %-10s %16.1f +- %-12.1f ns/op %14.1f ops/s",
+                name, param, mean, error, 1e9 / mean);
+        }
+
+        /** The benchmark. */
+        final String name;
+        /** Its parameter. */
+        final String param;
+        /** Measured iterations. */
+        final int count;
+        /** Mean time per operation, in nanoseconds. */
+        final double mean;
+        /** Twice the standard deviation of the iteration means. */
+        final double error;
+    }
+
+    /** Warmup iterations per benchmark. */
+    private final int _warmup;
+    /** Measured iterations per benchmark. */
+    private final int _measure;
+    /** Least duration of one iteration. */
+    private final long _iterationNanos;
+    /** Substring selecting benchmarks, or null for all. */
+    private final String _filter;
+    /** Results in the order run. */
+    private final List<Result> _results = new ArrayList<>();
+    /** Where results are consumed. */
+    private static volatile int _sink;
+}
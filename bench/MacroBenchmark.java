@@ -0,0 +1,284 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/** Runs the real gitlet commands, each in a fresh JVM as a user would,
+ * against a repository built by RepoGenerator, and records for each
+ * command the p50 and p99 latency, the bytes it read and wrote, and its
+ * peak resident set size. Results are written as JSON. Usage:
+ *
+ *     java -cp out gitlet.MacroBenchmark [--iterations 20]
+ *         [--commands status,log,add,commit,checkout,merge,fetch]
+ *         [--out results.json] [generator options]
+ *
+ * Bytes and peak RSS come from /proc and are reported as -1 where it is
+ * not available. Latencies include JVM startup, which the "startup" row
+ * measures on its own.
+ * @author Jake Clayton */
+public class MacroBenchmark {
+
+    /** Runs the benchmark described by ARGS, or, when ARGS starts with
+     * "probe", runs the gitlet command in the rest of ARGS and reports
+     * its resource use on the standard error. */
+    public static void main(String... args) throws Exception {
+        if (args.length > 0 && args[0].equals("probe")) {
+            probe(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        int iterations = 20;
+        String commands = "status,log,add,commit,checkout,merge,fetch";
+        File out = new File("macro-results.json");
+        RepoGenerator.Shape shape = new RepoGenerator.Shape();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+            case "--iterations": iterations = Integer.parseInt(args[i + 1]); break;
+            case "--commands": commands = args[i + 1]; break;
+            case "--out": out = new File(args[i + 1]); break;
+            default: shape.set(args[i], args[i + 1]);
+            }
+        }
+        File root = Files.createTempDirectory("gitlet-macro").toFile();
+        File repo = new File(root, "repo");
+        long start = System.nanoTime();
+        int branches = RepoGenerator.generate(repo, shape);
+        System.out.printf("generated repository in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        List<Result> results = new ArrayList<>();
+        results.add(measure("startup", iterations, i -> null, i -> new String[0], repo));
+        for (String command : commands.split(",")) {
+            results.add(benchmark(command, iterations, repo, root, branches));
+        }
+        write(out, shape, iterations, results);
+        System.out.println("wrote " + out);
+        delete(root);
+    }
+
+    /** Returns the measurements of ITERATIONS runs of COMMAND against
+     * REPO, which has BRANCHES side branches, using ROOT for scratch. */
+    private static Result benchmark(String command, int iterations, File repo,
+                                    File root, int branches) throws Exception {
+        String file = RepoGenerator.fileName(0);
+        switch (command) {
+        case "status":
+        case "log":
+            return measure(command, iterations, i -> null, i -> new String[] {command}, repo);
+        case "add":
+            return measure(command, iterations, i -> {
+                touch(repo, file, i);
+                return null;
+            }, i -> new String[] {"add", file}, repo);
+        case "commit":
+            return measure(command, iterations, i -> {
+                touch(repo, file, i);
+                gitlet(repo, "add", file);
+                return null;
+            }, i -> new String[] {"commit", "benchmark " + i}, repo);
+        case "checkout":
+            if (branches == 0) {
+                gitlet(repo, "branch", "side0");
+            }
+            return measure(command, iterations, i -> null,
+                i -> new String[] {"checkout", i % 2 == 0 ? "side0" : "master"}, repo);
+        case "merge":
+            return measure(command, iterations, i -> {
+                gitlet(repo, "branch", "topic" + i);
+                gitlet(repo, "checkout", "topic" + i);
+                touch(repo, RepoGenerator.fileName(1), i);
+                gitlet(repo, "add", RepoGenerator.fileName(1));
+                gitlet(repo, "commit", "topic " + i);
+                gitlet(repo, "checkout", "master");
+                touch(repo, file, i);
+                gitlet(repo, "add", file);
+                gitlet(repo, "commit", "master " + i);
+                return null;
+            }, i -> new String[] {"merge", "topic" + i}, repo);
+        case "fetch":
+            File[] clone = new File[1];
+            return measure(command, iterations, i -> {
+                clone[0] = new File(root, "clone" + i);
+                clone[0].mkdir();
+                gitlet(clone[0], "init");
+                gitlet(clone[0], "add-remote", "origin",
+                    new File(repo, ".gitlet").getPath());
+                return null;
+            }, i -> new String[] {"fetch", "origin", "master"}, clone);
+        default:
+            throw new IllegalArgumentException("unknown command " + command);
+        }
+    }
+
+    /** Something done with iteration number I. */
+    private interface Step<T> {
+        /** Returns the result of iteration I. */
+        T apply(int i) throws Exception;
+    }
+
+    /** Runs the command made by COMMAND, in DIRS[0], ITERATIONS times,
+     * each after an untimed SETUP, and returns its measurements under
+     * NAME. */
+    private static Result measure(String name, int iterations, Step<Void> setup,
+                                  Step<String[]> command, File... dirs) throws Exception {
+        Result r = new Result(name);
+        for (int i = 0; i < iterations; i += 1) {
+            setup.apply(i);
+            String[] args = command.apply(i);
+            long start = System.nanoTime();
+            long[] usage = gitlet(dirs[0], args);
+            r.add((System.nanoTime() - start) / 1e6, usage);
+        }
+        System.out.println(r);
+        return r;
+    }
+
+    /** Changes the file NAME in the working tree REPO for iteration I. */
+    private static void touch(File repo, String name, int i) {
+        File f = new File(repo, name);
+        Utils.writeContents(f, Utils.readContentsAsString(f) + "iteration " + i + "\n");
+    }
+
+    /** Runs gitlet with ARGS in DIR in a fresh JVM and returns its peak
+     * RSS in kilobytes and the bytes it read and wrote. */
+    private static long[] gitlet(File dir, String... args) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(MacroBenchmark.class.getName());
+        cmd.add("probe");
+        Collections.addAll(cmd, args);
+        Process p = new ProcessBuilder(cmd).directory(dir)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        String err = new String(p.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+        p.waitFor();
+        long[] usage = {-1, -1, -1};
+        for (String line : err.split("\n")) {
+            if (line.startsWith(PROBE)) {
+                String[] f = line.substring(PROBE.length()).trim().split(" ");
+                for (int k = 0; k < 3; k += 1) {
+                    usage[k] = Long.parseLong(f[k]);
+                }
+            }
+        }
+        return usage;
+    }
+
+    /** Runs Main with ARGS and, as the JVM exits, prints its peak RSS
+     * and I/O totals on the standard error. */
+    private static void probe(String... args) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            long rss = field("/proc/self/status", "VmHWM:");
+            long read = field("/proc/self/io", "rchar:");
+            long written = field("/proc/self/io", "wchar:");
+            System.err.println(PROBE + " " + rss + " " + read + " " + written);
+        }));
+        Main.main(args);
+    }
+
+    /** Returns the number following KEY in the /proc file PATH, or -1. */
+    private static long field(String path, String key) {
+        try {
+            for (String line : Files.readAllLines(new File(path).toPath())) {
+                if (line.startsWith(key)) {
+                    return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            /* Not on Linux. */
+        }
+        return -1;
+    }
+
+    /** Writes RESULTS of ITERATIONS runs against a repository of SHAPE
+     * to FILE as JSON. */
+    private static void write(File file, RepoGenerator.Shape shape, int iterations,
+                              List<Result> results) throws IOException {
+        try (PrintStream out = new PrintStream(file)) {
+            out.println("{");
+            out.printf("  \"shape\": {%s},%n", shape);
+            out.printf("  \"iterations\": %d,%n", iterations);
+            out.printf("  \"java\": \"%s\",%n", System.getProperty("java.version"));
+            out.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i += 1) {
+                out.print("    " + results.get(i).json());
+                out.println(i + 1 < results.size() ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    /** Deletes FILE and everything under it. */
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /** The measurements of one command. */
+    private static class Result {
+        /** Measurements of the command NAME. */
+        Result(String name) {
+            _name = name;
+        }
+
+        /** Records a run that took MILLIS and used USAGE. */
+        void add(double millis, long[] usage) {
+            _millis.add(millis);
+            _rss = Math.max(_rss, usage[0]);
+            _read.add((double) usage[1]);
+            _written.add((double) usage[2]);
+        }
+
+        /** Returns the Pth percentile of VALUES. */
+        private static double percentile(List<Double> values, double p) {
+            List<Double> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            int k = (int) Math.ceil(p / 100 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(k, sorted.size() - 1)));
+        }
+
+        /** Returns this result as a JSON object. */
+        String json() {
+            return String.format(Locale.ROOT, "{\"command\": \"%s\", \"p50_ms\": %.2f, "
+                + "\"p99_ms\": %.2f, \"bytes_read\": %.0f, \"bytes_written\": %.0f, "
+                + "\"peak_rss_kb\": %d}",
+                _name, percentile(_millis, 50), percentile(_millis, 99),
+                percentile(_read, 50), percentile(_written, 50), _rss);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                "%-10s p50 %8.1f ms  p99 %8.1f ms  read %10.0f B  wrote %10.0f B  rss %7d KB",
+                _name, percentile(_millis, 50), percentile(_millis, 99),
+                percentile(_read, 50), percentile(_written, 50), _rss);
+        }
+
+        /** The command. */
+        private final String _name;
+        /** The latency of each run. */
+        private final List<Double> _millis = new ArrayList<>();
+        /** Bytes read by each run. */
+        private final List<Double> _read = new ArrayList<>();
+        /** Bytes written by each run. */
+        private final List<Double> _written = new ArrayList<>();
+        /** The largest peak RSS of any run. */
+        private long _rss = -1;
+    }
+
+    /** Marks the line on which a probed command reports its usage. */
+    private static final String PROBE = "gitlet-probe";
+}
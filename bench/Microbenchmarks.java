@@ -0,0 +1,213 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/** Microbenchmarks of the hot paths under every command: hashing,
+ * beside the way Utils.sha1 used to hash, the serialization of blobs and
+ * of the commit history, blob construction, object file I/O, finding the
+ * split point of a merge, and the sets of object ID's the history walks
+ * keep. Usage:
+ *
+ *     javac -d out *.java bench/*.java
+ *     java -cp out gitlet.Microbenchmarks [--sizes 1K,1M,64M]
+ *         [--histories 10,1000,100000] [--warmup 2] [--iterations 5]
+ *         [--time MILLIS] [--filter NAME] [--out RESULTS.csv]
+ *
+ * Sizes may go up to 1G and histories up to 1000000, given a heap large
+ * enough to hold several copies of the largest (e.g. -Xmx8g for 1G).
+ * @author Jake Clayton */
+public class Microbenchmarks {
+
+    /** Runs the benchmarks selected by ARGS. */
+    public static void main(String... args) throws IOException {
+        String sizes = "1K,1M,64M";
+        String histories = "10,1000,100000";
+        int warmup = 2;
+        int iterations = 5;
+        long time = 1000;
+        String filter = null;
+        File out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+            case "--sizes": sizes = args[i + 1]; break;
+            case "--histories": histories = args[i + 1]; break;
+            case "--warmup": warmup = Integer.parseInt(args[i + 1]); break;
+            case "--iterations": iterations = Integer.parseInt(args[i + 1]); break;
+            case "--time": time = Long.parseLong(args[i + 1]); break;
+            case "--filter": filter = args[i + 1]; break;
+            case "--out": out = new File(args[i + 1]); break;
+            default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        Bench bench = new Bench(warmup, iterations, time, filter);
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        try {
+            for (String size : sizes.split(",")) {
+                objects(bench, dir, size);
+            }
+            for (String n : histories.split(",")) {
+                history(bench, n);
+            }
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+        if (out != null) {
+            bench.write(out);
+            System.out.println("wrote " + out);
+        }
+    }
+
+    /** Runs the benchmarks of one object of SIZE, such as 64K, using
+     * files in DIR. */
+    private static void objects(Bench bench, File dir, String size) {
+        byte[] contents = new byte[(int) Math.min(parseSize(size), Integer.MAX_VALUE - 8)];
+        Random random = new Random(42);
+        for (int i = 0; i < contents.length; i += 1) {
+            contents[i] = (byte) ('a' + random.nextInt(26));
+        }
+        File source = new File(dir, "source-" + size);
+        Utils.writeContents(source, contents);
+        Blob blob = new Blob(source);
+        byte[] serialized = Utils.serialize(blob);
+        File object = new File(dir, blob.get_hashCode());
+        Utils.writeContents(object, serialized);
+
+        bench.run("sha1.formatter", size, () -> () -> formatterSha1(contents, "name"));
+        bench.run("sha1", size, () -> () -> Utils.sha1(contents, "name"));
+        bench.run("sha256", size, () -> () -> {
+            MessageDigest md = SHA256.get();
+            md.reset();
+            md.update(contents);
+            Hashing.update(md, "name");
+            return Hashing.hex(md, 64);
+        });
+        bench.run("blob.hashFile", size, () -> () -> Blob.hash(source));
+        bench.run("blob.create", size, () -> () -> new Blob(source));
+        bench.run("blob.serialize", size, () -> () -> Utils.serialize(blob));
+        bench.run("blob.deserialize", size,
+            () -> () -> Utils.deserialize(serialized, Blob.class));
+        File target = new File(dir, "written-" + size);
+        bench.run("object.write", size, () -> () -> {
+            Utils.writeObject(target, blob);
+            return target;
+        });
+        bench.run("object.read", size, () -> () -> Utils.readObject(object, Blob.class));
+        source.delete();
+        object.delete();
+        target.delete();
+    }
+
+    /** Returns the SHA-1 hash of VALS as Utils.sha1 computed it before
+     * Hashing: a new digest each call and hex formatted a byte at a time.
+     * It is the baseline of the sha1 benchmarks. */
+    private static String formatterSha1(Object... vals) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Formatter result = new Formatter();
+        for (byte b : md.digest()) {
+            result.format("%02x", b);
+        }
+        return result.toString();
+    }
+
+    /** Runs the benchmarks of a history of N commits. */
+    private static void history(Bench bench, String n) {
+        if (!bench.selected("history") && !bench.selected("findSplit")
+            && !bench.selected("ids")) {
+            return;
+        }
+        int count = Integer.parseInt(n);
+        CommitIndex history = new CommitIndex();
+        Commit root = new Commit();
+        history.put(root.get_hashCode(), root);
+        List<String> ids = new ArrayList<>(List.of(root.get_hashCode()));
+        List<Commit> tips = new ArrayList<>();
+        for (String side : new String[] {"a", "b"}) {
+            Commit tip = root;
+            for (int i = 0; i < (count - 1) / 2; i += 1) {
+                HashMap<String, String> contents = new HashMap<>();
+                contents.put("f.txt", "b" + side + i);
+                tip = new Commit(side + i, contents, tip.get_hashCode());
+                history.put(tip.get_hashCode(), tip);
+                ids.add(tip.get_hashCode());
+            }
+            tips.add(tip);
+        }
+        byte[] serialized = Utils.serialize(history);
+
+        bench.run("history.serialize", n, () -> () -> Utils.serialize(history));
+        bench.run("history.deserialize", n,
+            () -> () -> Utils.deserialize(serialized, HashMap.class));
+        bench.run("findSplit", n,
+            () -> () -> CommitTree.findSplit(tips.get(0), tips.get(1), history));
+        bench.run("ids.hashSet", n, () -> () -> {
+            HashSet<String> seen = new HashSet<>();
+            for (String id : ids) {
+                seen.add(id);
+            }
+            int hits = 0;
+            for (String id : ids) {
+                hits += seen.contains(id) ? 1 : 0;
+            }
+            return hits;
+        });
+        bench.run("ids.idSet", n, () -> () -> {
+            IdSet seen = new IdSet();
+            for (String id : ids) {
+                seen.add(id);
+            }
+            int hits = 0;
+            for (String id : ids) {
+                hits += seen.contains(id) ? 1 : 0;
+            }
+            return hits;
+        });
+    }
+
+    /** Returns the number of bytes in SIZE, such as 64K, 1M or 1G. */
+    static long parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        long unit = 1;
+        if (s.endsWith("K")) {
+            unit = 1L << 10;
+        } else if (s.endsWith("M")) {
+            unit = 1L << 20;
+        } else if (s.endsWith("G")) {
+            unit = 1L << 30;
+        }
+        if (unit > 1) {
+            s = s.substring(0, s.length() - 1);
+        }
+        return Long.parseLong(s) * unit;
+    }
+
+    /** Each thread's SHA-256 digest, reused as Hashing reuses its SHA-1
+     * digests, for the sha256 benchmark. */
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("System does not support SHA-256");
+        }
+    });
+}
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Measures sustained operations per second against many repositories
+ * served from one RepositoryPool. Usage:
+ *
+ *     javac -d out *.java bench/*.java
+ *     java -cp out gitlet.PoolBenchmark [REPOS [THREADS [SECONDS [POOL]]]]
+ *
+ * Each operation picks a repository at random and runs status or log on
+ * it, or, one time in five, changes a file and commits it. With POOL set
+ * to 0 every operation opens its repository cold instead, for comparison.
+ * @author Jake Clayton */
+public class PoolBenchmark {
+
+    /** Runs the benchmark described by ARGS. */
+    public static void main(String... args) throws Exception {
+        int repos = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+            : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int poolSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        File root = Files.createTempDirectory("gitlet-pool").toFile();
+        File[] dirs = new File[repos];
+        long start = System.nanoTime();
+        for (int i = 0; i < repos; i += 1) {
+            dirs[i] = new File(root, "r" + i);
+            dirs[i].mkdir();
+            Repository repo = Repository.init(dirs[i]);
+            repo.setOut(NULL);
+            Utils.writeContents(new File(dirs[i], "f.txt"), "0\n");
+            repo.add("f.txt");
+            repo.commit("initial");
+        }
+        System.out.printf("created %d repositories in %.1f s under %s%n",
+            repos, (System.nanoTime() - start) / 1e9, root);
+
+        RepositoryPool pool = poolSize > 0 ? new RepositoryPool(poolSize) : null;
+        AtomicLong ops = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t += 1) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    File dir = dirs[rnd.nextInt(repos)];
+                    int kind = rnd.nextInt(5);
+                    try {
+                        if (pool != null) {
+                            pool.run(dir, repo -> operate(repo, kind));
+                        } else {
+                            operate(Repository.open(dir), kind);
+                        }
+                        ops.incrementAndGet();
+                    } catch (GitletException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        long last = 0;
+        for (int s = 1; s <= seconds; s += 1) {
+            Thread.sleep(1000);
+            long now = ops.get();
+            System.out.printf("%4d s %8d ops/s%n", s, now - last);
+            last = now;
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        System.out.printf("%s: %d repos, %d threads: %.0f ops/s sustained, %d failures",
+            pool != null ? "pool " + poolSize : "cold", repos, threads,
+            ops.get() / (double) seconds, failures.get());
+        if (pool != null) {
+            System.out.printf(", %d evictions", pool.evictions());
+        }
+        System.out.println();
+        delete(root);
+    }
+
+    /** Runs an operation of KIND on REPO. */
+    private static void operate(Repository repo, int kind) {
+        repo.setOut(NULL);
+        if (kind == 0) {
+            File f = new File(repo.workTree(), "f.txt");
+            Utils.writeContents(f, System.nanoTime() + "\n");
+            repo.add("f.txt");
+            repo.commit("change");
+        } else if (kind % 2 == 1) {
+            repo.status();
+        } else {
+            repo.log();
+        }
+    }
+
+    /** Deletes FILE and everything under it. */
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /** Output that goes nowhere. */
+    private static final PrintStream NULL = new PrintStream(OutputStream.nullOutputStream());
+}
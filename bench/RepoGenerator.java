@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/** Builds synthetic repositories of a chosen shape for benchmarking.
+ * The same settings and seed always give the same files, contents,
+ * branches and merges; only commit timestamps, and so ID's, differ.
+ * Usage:
+ *
+ *     java -cp out gitlet.RepoGenerator DIR [--commits 1000] [--files 100]
+ *         [--size 4K] [--branchiness 0.1] [--churn 0.05] [--seed 1]
+ *
+ * @author Jake Clayton */
+public class RepoGenerator {
+
+    /** The shape of a repository to generate. */
+    static class Shape {
+        /** Commits on master, not counting those on side branches. */
+        int commits = 1000;
+        /** Files in the working tree. */
+        int files = 100;
+        /** Bytes in each file. */
+        int size = 4096;
+        /** Chance that a commit is followed by a side branch that is
+         * then merged back. */
+        double branchiness = 0.1;
+        /** Fraction of the files that each commit changes. */
+        double churn = 0.05;
+        /** Seed for everything random. */
+        long seed = 1;
+
+        /** Sets the option NAME to VALUE. */
+        void set(String name, String value) {
+            switch (name) {
+            case "--commits": commits = Integer.parseInt(value); break;
+            case "--files": files = Integer.parseInt(value); break;
+            case "--size": size = (int) Microbenchmarks.parseSize(value); break;
+            case "--branchiness": branchiness = Double.parseDouble(value); break;
+            case "--churn": churn = Double.parseDouble(value); break;
+            case "--seed": seed = Long.parseLong(value); break;
+            default: throw new IllegalArgumentException("unknown option " + name);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("\"commits\": %d, \"files\": %d, \"size\": %d, "
+                + "\"branchiness\": %s, \"churn\": %s, \"seed\": %d",
+                commits, files, size, branchiness, churn, seed);
+        }
+    }
+
+    /** Generates a repository of SHAPE in the empty directory DIR and
+     * returns the number of side branches merged into it. */
+    static int generate(File dir, Shape shape) {
+        dir.mkdirs();
+        Random random = new Random(shape.seed);
+        Repository repo = Repository.init(dir);
+        repo.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        for (int i = 0; i < shape.files; i += 1) {
+            write(dir, fileName(i), shape.size, random);
+            repo.add(fileName(i));
+        }
+        repo.commit("generated 0");
+        int changes = Math.max(1, (int) Math.round(shape.churn * shape.files));
+        int branches = 0;
+        for (int c = 1; c < shape.commits; c += 1) {
+            for (int k = 0; k < changes; k += 1) {
+                String name = fileName(random.nextInt(shape.files));
+                write(dir, name, shape.size, random);
+                repo.add(name);
+            }
+            repo.commit("generated " + c);
+            if (random.nextDouble() < shape.branchiness) {
+                String branch = "side" + branches;
+                repo.branch(branch);
+                repo.checkoutBranch(branch);
+                int length = 1 + random.nextInt(3);
+                for (int j = 0; j < length; j += 1) {
+                    String name = branch + "_" + j + ".txt";
+                    write(dir, name, shape.size, random);
+                    repo.add(name);
+                    repo.commit(branch + " " + j);
+                }
+                repo.checkoutBranch("master");
+                String name = fileName(random.nextInt(shape.files));
+                write(dir, name, shape.size, random);
+                repo.add(name);
+                repo.commit("before merging " + branch);
+                repo.merge(branch);
+                branches += 1;
+            }
+        }
+        return branches;
+    }
+
+    /** Returns the name of the Ith generated file. */
+    static String fileName(int i) {
+        return String.format("f%06d.txt", i);
+    }
+
+    /** Fills the file NAME in DIR with SIZE bytes of lines of text drawn
+     * from RANDOM. */
+    private static void write(File dir, String name, int size, Random random) {
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i += 1) {
+            contents[i] = i % 64 == 63 ? (byte) '\n' : (byte) ('a' + random.nextInt(26));
+        }
+        Utils.writeContents(new File(dir, name), contents);
+    }
+
+    /** Generates the repository described by ARGS. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java gitlet.RepoGenerator DIR [OPTIONS]");
+            return;
+        }
+        Shape shape = new Shape();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            shape.set(args[i], args[i + 1]);
+        }
+        long start = System.nanoTime();
+        int branches = generate(new File(args[0]), shape);
+        System.out.printf("generated %d commits and %d merged branches in %.1f s%n",
+            shape.commits, branches, (System.nanoTime() - start) / 1e9);
+    }
+}